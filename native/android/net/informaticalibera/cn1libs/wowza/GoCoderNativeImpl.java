@@ -61,7 +61,12 @@ public class GoCoderNativeImpl implements WOWZBroadcastStatusCallback, WOWZPlaye
     // Status
     private String status;
 
-    private boolean startRequested = false;
+    private volatile boolean startRequested = false;
+
+    // Pending reconnection after a broadcast error, guarded by reconnectLock
+    // (it's used by the UI thread, the EDT and the WowzaScheduler thread)
+    private final Object reconnectLock = new Object();
+    private net.informaticalibera.cn1libs.wowza.WowzaScheduler.Task reconnectTask = null;
 
     // instance of the current class
     private GoCoderNativeImpl instance;
@@ -249,7 +254,13 @@ public class GoCoderNativeImpl implements WOWZBroadcastStatusCallback, WOWZPlaye
     }
 
     public void stopBroadcast() {
-        startRequested = false;
+        synchronized (reconnectLock) {
+            startRequested = false;
+            if (reconnectTask != null) {
+                reconnectTask.cancel();
+                reconnectTask = null;
+            }
+        }
         if (goCoderBroadcaster.getStatus().isBroadcasting()) {
             goCoderBroadcaster.endBroadcast();
         }
@@ -295,20 +306,28 @@ public class GoCoderNativeImpl implements WOWZBroadcastStatusCallback, WOWZPlaye
                 com.codename1.io.Log.p("Streaming error: " + goCoderStatus.getLastError().getErrorDescription(), Log.ERROR);
                 com.codename1.io.Log.p("Streaming error: " + goCoderStatus.getLastError().toString(), Log.ERROR);
                 net.informaticalibera.cn1libs.wowza.Utilities.sendLog();
+                net.informaticalibera.cn1libs.wowza.Utilities.broadcastFailed();
                 status = null;
                 if (startRequested) {
                     net.informaticalibera.cn1libs.wowza.Utilities.showReconnectingToastBar();
-                    final java.util.Timer timer = new java.util.Timer();
-                    timer.schedule(new java.util.TimerTask() {
-                        @Override
-                        public void run() {
-                            if (startRequested) {
+                    synchronized (reconnectLock) {
+                        if (reconnectTask != null) {
+                            reconnectTask.cancel();
+                        }
+                        reconnectTask = net.informaticalibera.cn1libs.wowza.WowzaScheduler.schedule("GoCoderNativeImpl.reconnect", new Runnable() {
+                            @Override
+                            public void run() {
+                                synchronized (reconnectLock) {
+                                    reconnectTask = null;
+                                    if (!startRequested) {
+                                        return;
+                                    }
+                                }
                                 com.codename1.io.Log.p("Trying to start broadcast again", Log.DEBUG);
                                 goCoderBroadcaster.startBroadcast(goCoderBroadcastConfig, instance);
                             }
-                            timer.cancel();
-                        }
-                    }, 10000);
+                        }, 10000);
+                    }
                 }
             }
         });
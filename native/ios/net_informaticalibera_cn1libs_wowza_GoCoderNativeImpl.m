@@ -18,6 +18,7 @@
 #import "com_codename1_io_Log.h"
 #import "com_codename1_ui_CN.h"
 #import "net_informaticalibera_cn1libs_wowza_GoCoder.h"
+#import "net_informaticalibera_cn1libs_wowza_Utilities.h"
 
 @interface net_informaticalibera_cn1libs_wowza_GoCoderNativeImpl () <WOWZBroadcastStatusCallback, WOWZPlayerStatusCallback>
 
@@ -69,7 +70,7 @@ BOOL startRequested = NO;
             if (goCoderLicensingError != nil) {
                 // Log license key registration failure
                 com_codename1_io_Log_p___java_lang_String(CN1_THREAD_GET_STATE_PASS_ARG fromNSString(CN1_THREAD_GET_STATE_PASS_ARG [goCoderLicensingError localizedDescription]));
-                com_codename1_io_Log_sendLogAsync__(CN1_THREAD_GET_STATE_PASS_SINGLE_ARG);
+                net_informaticalibera_cn1libs_wowza_Utilities_sendLog__(CN1_THREAD_GET_STATE_PASS_SINGLE_ARG);
             } else {
                 // Initialize the GoCoder SDK
                 self.goCoder = [WowzaGoCoder sharedInstance];
@@ -157,7 +158,7 @@ BOOL startRequested = NO;
             if (goCoderLicensingError != nil) {
                 // Log license key registration failure
                 com_codename1_io_Log_p___java_lang_String(CN1_THREAD_GET_STATE_PASS_ARG fromNSString(CN1_THREAD_GET_STATE_PASS_ARG [goCoderLicensingError localizedDescription]));
-                com_codename1_io_Log_sendLogAsync__(CN1_THREAD_GET_STATE_PASS_SINGLE_ARG);
+                net_informaticalibera_cn1libs_wowza_Utilities_sendLog__(CN1_THREAD_GET_STATE_PASS_SINGLE_ARG);
             } else {
                 // Initialize the GoCoder SDK
                 self.goCoder = [WowzaGoCoder sharedInstance];
@@ -297,6 +298,7 @@ BOOL startRequested = NO;
             if (self.goCoder.status.state != WOWZBroadcastStateIdle) {
                 [self.goCoder endStreaming:self];
             }
+            net_informaticalibera_cn1libs_wowza_Utilities_broadcastFailed__(CN1_THREAD_GET_STATE_PASS_SINGLE_ARG);
             
             self.status = nil;
             if (startRequested) {
@@ -21,26 +21,20 @@
     NSString* key = param;
     NSString* data = param1;
 
-    const char *cKey = [key cStringUsingEncoding:NSASCIIStringEncoding];
-    const char *cData = [data cStringUsingEncoding:NSASCIIStringEncoding];
+    const char *cKey = [key UTF8String];
+    const char *cData = [data UTF8String];
     unsigned char cHMAC[CC_SHA256_DIGEST_LENGTH];
     CCHmac(kCCHmacAlgSHA256, cKey, strlen(cKey), cData, strlen(cData), cHMAC);
-    NSData *hash = [[NSData alloc] initWithBytes:cHMAC length:sizeof(cHMAC)];
-    NSString* s = [net_informaticalibera_cn1libs_wowza_HMAC_SHA256Impl dataToHexString:hash];
-    return s;
-}
-
-+ (NSString*)dataToHexString:(NSData*)theData {
-    // thanks to: https://stackoverflow.com/a/14248343
-
-    NSUInteger          len = [theData length];
-    char *              chars = (char *)[theData bytes];
-    NSMutableString *   hexString = [[NSMutableString alloc] init];
-
-    for(NSUInteger i = 0; i < len; i++ )
-        [hexString appendString:[NSString stringWithFormat:@"%0.2hhx", chars[i]]];
 
-    return hexString;
+    // hex encoding in a C buffer, instead of a formatted NSString for every byte
+    static const char hexDigits[] = "0123456789abcdef";
+    char hex[CC_SHA256_DIGEST_LENGTH * 2 + 1];
+    for (int i = 0; i < CC_SHA256_DIGEST_LENGTH; i++) {
+        hex[i * 2] = hexDigits[cHMAC[i] >> 4];
+        hex[i * 2 + 1] = hexDigits[cHMAC[i] & 0x0f];
+    }
+    hex[CC_SHA256_DIGEST_LENGTH * 2] = '\0';
+    return [NSString stringWithCString:hex encoding:NSASCIIStringEncoding];
 }
 
 -(BOOL)isSupported{
@@ -2,22 +2,36 @@ package net.informaticalibera.cn1libs.wowza;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import org.apache.commons.codec.binary.Hex;
 
 public class HMAC_SHA256Impl implements net.informaticalibera.cn1libs.wowza.HMAC_SHA256 {
 
-    public String HMAC_sha256(String param, String param1) {
+    // Mac initialized with the last key: after doFinal it restarts from the precomputed inner and outer pads
+    private String key = null;
+    private Mac mac = null;
+
+    // reusable buffers, shared with the portable implementation through WowzaEncoding
+    private byte[] message = new byte[256];
+    private final byte[] digest = new byte[32];
+    private final char[] hex = new char[64];
+
+    public synchronized String HMAC_sha256(String param, String param1) {
         String secret = param;
-        String message = param1;
 
         try {
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-            sha256_HMAC.init(secret_key);
-
-            return Hex.encodeHexString(sha256_HMAC.doFinal(message.getBytes()));
+            if (mac == null || !secret.equals(key)) {
+                byte[] keyBytes = new byte[secret.length() * 3];
+                int keyLength = WowzaEncoding.encodeUtf8(secret, keyBytes);
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(keyBytes, 0, keyLength, "HmacSHA256"));
+                key = secret;
+            }
+            message = WowzaEncoding.ensureUtf8Capacity(message, param1);
+            mac.update(message, 0, WowzaEncoding.encodeUtf8(param1, message));
+            mac.doFinal(digest, 0);
+            return WowzaEncoding.toHex(digest, hex);
         } catch (Exception ex) {
             System.out.println(ex);
+            mac = null;
             return null;
         }
     }
@@ -15,7 +15,9 @@ package net.informaticalibera.cn1libs.wowza;
 import com.codename1.components.SpanLabel;
 import com.codename1.io.Log;
 import com.codename1.system.NativeLookup;
+import com.codename1.ui.CN;
 import com.codename1.ui.Component;
+import com.codename1.util.OnComplete;
 
 /**
  * GoCoder main class
@@ -47,12 +49,29 @@ public class GoCoder {
 
     private static int quality = MEDIUM_QUALITY_720p;
     private static GoCoderNative goCoderNative = NativeLookup.create(GoCoderNative.class);
+    // id of the stream of the current broadcast, null if its config was not
+    // fetched by GoCoderBroadcastConfig.getInstance
+    private static String broadcastId = null;
+
+    static {
+        // Utilities.sendLog() and Utilities.broadcastFailed() are invoked only
+        // by the iOS native code: without a reference from Java, the ParparVM
+        // optimizer removes them and the build fails at link time. The calls
+        // run only if the native code is missing.
+        if (goCoderNative == null && Utilities.isiOSNative()) {
+            Utilities.sendLog();
+            Utilities.broadcastFailed();
+        }
+    }
 
     /**
-     * Start broadcast.
+     * Start broadcast. If the broadcast fails to connect or to authenticate,
+     * the cached transcoder config of its stream is invalidated, see
+     * {@link WowzaPersistentCache}.
      */
     public static void startBroadcast(GoCoderBroadcastConfig config) {
         if (goCoderNative != null && goCoderNative.isSupported()) {
+            broadcastId = config.getId();
             goCoderNative.startBroadcast(config.getHostAddress(), config.getPortNumber(), config.getApplicationName(), config.getStreamName(), config.getUsername(), config.getPassword());
         } else {
             if (WowzaAccount.isVerboseLog()) {
@@ -61,11 +80,84 @@ public class GoCoder {
         }
     }
 
+    /**
+     * <p>
+     * (Async) Goes live with a stream of the pool: gets a stopped stream from
+     * the pool, starts it, fetches its transcoder config, initializes the
+     * camera view and, when all these stages are done, starts the
+     * broadcast.</p>
+     * <p>
+     * The stages that don't depend on each other run concurrently: the camera
+     * view is initialized immediately, and the transcoder config is fetched
+     * while the stream is starting. If a stage fails, the broadcast is not
+     * started and the stream, if started, is stopped.</p>
+     *
+     * @param startingSize of the pool, see
+     * {@link WowzaLiveStream#getStreamFromPool(int, int, net.informaticalibera.cn1libs.wowza.WowzaLiveStreamParams, com.codename1.util.OnComplete, java.lang.Runnable)}
+     * @param threshold of the pool
+     * @param defaultParams of the new streams of the pool, it can be null
+     * @param timeout (seconds) of the stream start, null to use the default
+     * timeout, or any other value &gt;= 30
+     * @param onCameraView callback invoked on the EDT with the camera view, to
+     * be added to the current Form
+     * @return a promise of the latency breakdown of the stages, completed
+     * when the broadcast is started
+     */
+    public static WowzaPromise<WowzaGoLiveReport> goLive(int startingSize, int threshold, WowzaLiveStreamParams defaultParams, Integer timeout, OnComplete<Component> onCameraView) {
+        WowzaGoLiveReport report = new WowzaGoLiveReport();
+
+        WowzaPromise<Component> camera = new WowzaPromise<>();
+        CN.callSerially(() -> {
+            long stageStart = System.currentTimeMillis();
+            try {
+                Component view = getCameraView();
+                report.record(WowzaGoLiveReport.CAMERA, stageStart);
+                onCameraView.completed(view);
+                camera.complete(view);
+            } catch (RuntimeException ex) {
+                Log.e(ex);
+                camera.fail(ex);
+            }
+        });
+
+        WowzaPromise<String> stream = report.time(WowzaGoLiveReport.STREAM_FROM_POOL, WowzaLiveStream.getStreamFromPoolAsync(startingSize, threshold, defaultParams));
+        WowzaPromise<String> started = stream.thenCompose((String id) -> {
+            return report.time(WowzaGoLiveReport.START, WowzaLiveStream.startAsync(id, timeout));
+        });
+        WowzaPromise<GoCoderBroadcastConfig> config = stream.thenCompose((String id) -> {
+            return report.time(WowzaGoLiveReport.CONFIG, GoCoderBroadcastConfig.getInstanceAsync(id));
+        });
+
+        WowzaPromise<WowzaGoLiveReport> live = WowzaPromise.allOf(camera, started, config, (Component view, String startedId, GoCoderBroadcastConfig broadcastConfig) -> {
+            long stageStart = System.currentTimeMillis();
+            startBroadcast(broadcastConfig);
+            report.record(WowzaGoLiveReport.BROADCAST, stageStart);
+            report.complete(startedId, broadcastConfig);
+            if (WowzaAccount.isVerboseLog()) {
+                Log.p("GoCoder.goLive -> " + report, Log.DEBUG);
+            }
+            return report;
+        });
+        live.onFailure((Throwable err) -> {
+            if (WowzaAccount.isVerboseLog()) {
+                WowzaLogShipper.log("GoCoder.goLive -> Failed to go live: " + err.getMessage(), Log.ERROR);
+            }
+            // a started stream is not used
+            started.onSuccess((String id) -> {
+                WowzaLiveStream.stop(id, stoppedId -> {
+                }, () -> {
+                });
+            });
+        });
+        return live;
+    }
+
     /**
      * Stop the broadcast that is currently running.
      */
     public static void stopBroadcast() {
         if (goCoderNative != null && goCoderNative.isSupported()) {
+            broadcastId = null;
             goCoderNative.stopBroadcast();
         } else {
             if (WowzaAccount.isVerboseLog()) {
@@ -74,6 +166,22 @@ public class GoCoder {
         }
     }
 
+    /**
+     * Invoked when the current broadcast fails to connect or to authenticate:
+     * the transcoder config used by it can be outdated (for example, the
+     * source password was changed), so its cached copy is invalidated and the
+     * next GoCoderBroadcastConfig.getInstance asks the server.
+     */
+    static void broadcastFailed() {
+        String id = broadcastId;
+        if (id != null) {
+            if (WowzaAccount.isVerboseLog()) {
+                Log.p("GoCoder.broadcastFailed -> Invalidating the cached transcoder config of the stream with id " + id, Log.DEBUG);
+            }
+            WowzaPersistentCache.invalidateTranscoder(id);
+        }
+    }
+
     /**
      * Stop the broadcast that is currently running.
      */
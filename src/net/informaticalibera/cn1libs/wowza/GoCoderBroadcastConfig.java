@@ -15,8 +15,8 @@ package net.informaticalibera.cn1libs.wowza;
 import com.codename1.io.Log;
 import com.codename1.io.rest.ErrorCodeHandler;
 import com.codename1.io.rest.Response;
+import com.codename1.ui.CN;
 import com.codename1.util.OnComplete;
-import java.util.Map;
 import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
 import static net.informaticalibera.cn1libs.wowza.WowzaLiveStream.getRequest;
 
@@ -29,79 +29,105 @@ import static net.informaticalibera.cn1libs.wowza.WowzaLiveStream.getRequest;
 public class GoCoderBroadcastConfig {
 
     private final String id;
-    private String hostAddress;
-    private int portNumber;
-    private String applicationName;
-    private String streamName;
-    private String username;
-    private String password;
-
-    private GoCoderBroadcastConfig(String id) {
+    private final String hostAddress;
+    private final int portNumber;
+    private final String applicationName;
+    private final String streamName;
+    private final String username;
+    private final String password;
+
+    GoCoderBroadcastConfig(String id, String hostAddress, int portNumber, String applicationName, String streamName, String username, String password) {
         this.id = id;
+        this.hostAddress = hostAddress;
+        this.portNumber = portNumber;
+        this.applicationName = applicationName;
+        this.streamName = streamName;
+        this.username = username;
+        this.password = password;
     }
 
-    ;
-    
     /**
      * (Async) Get an instance of GoCoderBroadcastConfig after querying the
      * Wowza Cloud server for the stream with the given id.
      * 
+     * The config is kept in the {@link WowzaPersistentCache}, so the next
+     * calls (also after an app restart) don't wait for the server.
+     * 
      * @param id of the stream
      * @param onComplete callback on success
      * @param onFail callback on failure
      */
     public static void getInstance(String id, OnComplete<GoCoderBroadcastConfig> onComplete, Runnable onFail) {
-        GoCoderBroadcastConfig instance = new GoCoderBroadcastConfig(id);
-
         if (id == null) {
             throw new IllegalStateException("GoCoderBroadcastConfig.getInstance -> id of the stream cannot be null");
         }
 
+        WowzaPersistentCache.Entry<GoCoderBroadcastConfig> cached = WowzaPersistentCache.getTranscoder(id);
+        if (cached != null) {
+            if (isVerboseLog()) {
+                Log.p("GoCoderBroadcastConfig.getInstance -> Using the cached transcoder info for the stream with id " + id, Log.DEBUG);
+            }
+            CN.callSerially(() -> {
+                onComplete.completed(cached.value);
+            });
+            if (WowzaPersistentCache.isStale(cached)) {
+                // revalidation in background
+                requestInstance(id, config -> {
+                }, () -> {
+                });
+            }
+            return;
+        }
+        requestInstance(id, onComplete, onFail);
+    }
+
+    /**
+     * (Async) Get an instance of GoCoderBroadcastConfig, see
+     * {@link #getInstance(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable)}
+     *
+     * @param id of the stream
+     * @return a promise of the config
+     */
+    public static WowzaPromise<GoCoderBroadcastConfig> getInstanceAsync(String id) {
+        return WowzaPromise.from((OnComplete<GoCoderBroadcastConfig> onComplete, Runnable onFail) -> {
+            getInstance(id, onComplete, onFail);
+        });
+    }
+
+    /**
+     * Queries the server for the transcoder info, saving it in the cache.
+     */
+    private static void requestInstance(String id, OnComplete<GoCoderBroadcastConfig> onComplete, Runnable onFail) {
         getRequest("transcoders/" + id)
                 .onErrorCodeString(new ErrorCodeHandler<String>() {
                     @Override
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("GoCoderBroadcastConfig.getInstance -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("GoCoderBroadcastConfig.getInstance -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("GoCoderBroadcastConfig.getInstance -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("GoCoderBroadcastConfig.getInstance -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("transcoder");
-
-                        try {
-                            instance.hostAddress = (String) response.get("domain_name");
-                            instance.portNumber = ((Double) response.get("source_port")).intValue();
-                            instance.applicationName = (String) response.get("application_name");
-                            instance.streamName = (String) response.get("stream_name");
-                            instance.username = (String) response.get("username");
-                            instance.password = (String) response.get("password");
-                            if (isVerboseLog()) {
-                                Log.p("GoCoderBroadcastConfig.getInstance -> (Code 200) Successfully get the transcoder info for the stream with id " + id, Log.DEBUG);
-                            }
-                            onComplete.completed(instance);
-                        } catch (Exception ex) {
-                            if (isVerboseLog()) {
-                                Log.e(ex);
-                                Log.p("GoCoderBroadcastConfig.getInstance -> (Code 200) Error: the transcoder info for the stream with id " + id + " is invalid", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
+                .fetchDecoded(new WowzaJsonDecoder.Transcoder(id), (GoCoderBroadcastConfig instance) -> {
+                    // success
+                    if (instance != null) {
+                        if (isVerboseLog()) {
+                            Log.p("GoCoderBroadcastConfig.getInstance -> (Code 200) Successfully get the transcoder info for the stream with id " + id, Log.DEBUG);
+                        }
+                        WowzaPersistentCache.putTranscoder(instance);
+                        onComplete.completed(instance);
+                    } else {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("GoCoderBroadcastConfig.getInstance -> (Code 200) Error: the transcoder info for the stream with id " + id + " is invalid", Log.ERROR);
                         }
+                        onFail.run();
                     }
                 });
     }
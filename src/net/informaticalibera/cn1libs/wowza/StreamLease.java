@@ -0,0 +1,271 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.JSONParser;
+import com.codename1.io.Log;
+import com.codename1.io.Preferences;
+import com.codename1.io.rest.ErrorCodeHandler;
+import com.codename1.io.rest.Response;
+import com.codename1.util.OnComplete;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Reservation of a stream shared between several devices: the lease is
+ * stored in the "description" of the transcoder of the stream, as
+ * "cn1lib-lease:owner:expiration", where the owner is a random id of the
+ * current app installation and the expiration is a timestamp in
+ * milliseconds. The expirations are written and checked with the server
+ * clock (WowzaClock), so devices with a wrong clock agree on them.</p>
+ * <p>
+ * The REST API has no compare-and-set, so the lease is best-effort: after
+ * writing it, the description is read again to check that another device
+ * didn't overwrite it in the meantime, but two devices whose writes are more
+ * than SETTLE_DELAY apart can both pass that check. For this reason the
+ * lease must be verified again with {@link #verify(java.lang.String, java.lang.Runnable, com.codename1.util.OnComplete, java.lang.Runnable)}
+ * just before starting the stream: the device whose lease was overwritten
+ * finds the other owner and gives up the stream. Transcoders with a
+ * description not written by this CN1Lib are never modified, nor
+ * leased.</p>
+ *
+ * @author Francesco Galgani
+ */
+class StreamLease {
+
+    private static final String PREFIX = "cn1lib-lease:";
+    private static final String OWNER_PREFERENCE = "WowzaStreamLease.owner";
+
+    /**
+     * Milliseconds to wait before checking that the written lease was not
+     * overwritten by another device.
+     */
+    private static final long SETTLE_DELAY = 500;
+
+    private static String owner = null;
+
+    private StreamLease() {
+    }
+
+    /**
+     * Returns the owner id of the current app installation.
+     *
+     * @return owner id
+     */
+    static synchronized String getOwner() {
+        if (owner == null) {
+            owner = Preferences.get(OWNER_PREFERENCE, null);
+            if (owner == null) {
+                owner = Long.toString(System.currentTimeMillis(), 36) + Long.toString(new Random().nextInt() & 0xffffffffL, 36);
+                Preferences.set(OWNER_PREFERENCE, owner);
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * (Async) Tries to reserve the given stream.
+     *
+     * @param id of the stream
+     * @param duration of the lease in milliseconds
+     * @param onAcquired callback invoked if the stream was reserved
+     * @param onLost callback invoked if the stream is reserved by another
+     * device or it cannot be leased, the passed value is the time
+     * (milliseconds since the epoch, server clock) until which the stream is not available,
+     * Long.MAX_VALUE if it can never be leased
+     * @param onFail callback for failure
+     */
+    static void acquire(String id, long duration, OnComplete<String> onAcquired, OnComplete<Long> onLost, Runnable onFail) {
+        readDescription(id, description -> {
+            if (isCustom(description)) {
+                // the description is not ours, so we cannot use it
+                if (isVerboseLog()) {
+                    Log.p("StreamLease.acquire -> The transcoder " + id + " has a custom description, so it cannot be leased", Log.WARNING);
+                }
+                onLost.completed(Long.MAX_VALUE);
+                return;
+            }
+            String leaseOwner = getLeaseOwner(description);
+            if (leaseOwner != null && !leaseOwner.equals(getOwner())) {
+                if (isVerboseLog()) {
+                    Log.p("StreamLease.acquire -> The stream " + id + " is leased by " + leaseOwner, Log.DEBUG);
+                }
+                onLost.completed(getLeaseExpiration(description));
+                return;
+            }
+            writeDescription(id, PREFIX + getOwner() + ":" + (WowzaClock.now() + duration), () -> {
+                WowzaScheduler.schedule("StreamLease.verify", () -> {
+                    readDescription(id, writtenDescription -> {
+                        if (getOwner().equals(getLeaseOwner(writtenDescription))) {
+                            if (isVerboseLog()) {
+                                Log.p("StreamLease.acquire -> Leased the stream " + id, Log.DEBUG);
+                            }
+                            onAcquired.completed(id);
+                        } else {
+                            if (isVerboseLog()) {
+                                Log.p("StreamLease.acquire -> The lease of the stream " + id + " was taken by another device", Log.DEBUG);
+                            }
+                            onLost.completed(isCustom(writtenDescription) ? Long.MAX_VALUE : getLeaseExpiration(writtenDescription));
+                        }
+                    }, onFail);
+                }, SETTLE_DELAY);
+            }, onFail);
+        }, onFail);
+    }
+
+    /**
+     * (Async) Checks that the lease of the given stream is still owned by the
+     * current app installation, to be invoked just before starting the
+     * stream.
+     *
+     * @param id of the stream
+     * @param onOwned callback invoked if the lease is still ours
+     * @param onLost callback invoked if the lease was taken by another
+     * device, with the same value of acquire(...)
+     * @param onFail callback for failure
+     */
+    static void verify(String id, Runnable onOwned, OnComplete<Long> onLost, Runnable onFail) {
+        readDescription(id, description -> {
+            if (getOwner().equals(getLeaseOwner(description))) {
+                onOwned.run();
+            } else {
+                if (isVerboseLog()) {
+                    Log.p("StreamLease.verify -> The lease of the stream " + id + " is not ours anymore, it will not be started", Log.WARNING);
+                }
+                onLost.completed(isCustom(description) ? Long.MAX_VALUE : getLeaseExpiration(description));
+            }
+        }, onFail);
+    }
+
+    /**
+     * (Async) Removes the lease of the given stream, if it's owned by the
+     * current app installation.
+     *
+     * @param id of the stream
+     */
+    static void release(String id) {
+        readDescription(id, description -> {
+            if (getOwner().equals(getLeaseOwner(description))) {
+                writeDescription(id, "", () -> {
+                    if (isVerboseLog()) {
+                        Log.p("StreamLease.release -> Released the stream " + id, Log.DEBUG);
+                    }
+                }, () -> {
+                    if (isVerboseLog()) {
+                        Log.p("StreamLease.release -> Failed to release the stream " + id, Log.ERROR);
+                    }
+                });
+            }
+        }, () -> {
+            if (isVerboseLog()) {
+                Log.p("StreamLease.release -> Failed to release the stream " + id, Log.ERROR);
+            }
+        });
+    }
+
+    /**
+     * Returns true if the description was not written by this CN1Lib.
+     */
+    private static boolean isCustom(String description) {
+        return description != null && description.length() > 0 && !description.startsWith(PREFIX);
+    }
+
+    /**
+     * Returns the expiration of a not expired lease, or 0.
+     */
+    private static long getLeaseExpiration(String description) {
+        if (getLeaseOwner(description) == null) {
+            return 0;
+        }
+        return Long.parseLong(description.substring(description.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * Returns the owner of a not expired lease, or null.
+     */
+    private static String getLeaseOwner(String description) {
+        if (description == null || !description.startsWith(PREFIX)) {
+            return null;
+        }
+        int separator = description.lastIndexOf(':');
+        if (separator <= PREFIX.length()) {
+            return null;
+        }
+        try {
+            long expiration = Long.parseLong(description.substring(separator + 1));
+            if (expiration < WowzaClock.now()) {
+                return null;
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        return description.substring(PREFIX.length(), separator);
+    }
+
+    private static void readDescription(String id, OnComplete<String> onComplete, Runnable onFail) {
+        WowzaLiveStream.getRequest("transcoders/" + id)
+                .exclusive()
+                .onErrorCodeString(new ErrorCodeHandler<String>() {
+                    @Override
+                    public void onError(Response<String> v) {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("StreamLease -> Response with code " + v.getResponseCode() + ", failed to get the transcoder " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
+                        }
+                        onFail.run();
+                    }
+                })
+                .fetchDecoded(new WowzaJsonDecoder.TranscoderDescription(), (String description) -> {
+                    if (description == null) {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("StreamLease -> (Code 200) Error: invalid transcoder " + id + " returned by the server", Log.ERROR);
+                        }
+                        onFail.run();
+                        return;
+                    }
+                    onComplete.completed(description);
+                });
+    }
+
+    private static void writeDescription(String id, String description, Runnable onComplete, Runnable onFail) {
+        Map<String, Object> transcoder = new HashMap<>();
+        transcoder.put("description", description);
+        Map<String, Object> body = new HashMap<>();
+        body.put("transcoder", transcoder);
+
+        WowzaLiveStream.patchRequest("transcoders/" + id)
+                .body(JSONParser.mapToJson(body))
+                .onErrorCodeString(new ErrorCodeHandler<String>() {
+                    @Override
+                    public void onError(Response<String> v) {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("StreamLease -> Response with code " + v.getResponseCode() + ", failed to update the transcoder " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
+                        }
+                        onFail.run();
+                    }
+                })
+                .fetchDecoded(new WowzaJsonDecoder.TranscoderDescription(), (String writtenDescription) -> {
+                    if (writtenDescription == null) {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("StreamLease -> (Code 200) Error: invalid transcoder " + id + " returned by the server", Log.ERROR);
+                        }
+                        onFail.run();
+                        return;
+                    }
+                    onComplete.run();
+                });
+    }
+
+}
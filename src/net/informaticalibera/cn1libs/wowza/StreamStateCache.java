@@ -0,0 +1,119 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.ui.CN;
+import com.codename1.util.OnComplete;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of the stream states, keyed by stream id, disabled by
+ * default. Sending a start/stop request invalidates the cached state of the
+ * stream, and its response updates it, while concurrent lookups of the
+ * same id share a single request thanks to WowzaRequest. Every state received
+ * from the server passes through this cache, so it's also the source of the
+ * transitions notified by the StreamStateMonitor.
+ *
+ * @author Francesco Galgani
+ */
+class StreamStateCache {
+
+    // disabled by default, so fetchState always returns a fresh state unless the app opts in
+    private static int ttl = 0;
+    private static final Map<String, CachedState> states = new HashMap<>();
+
+    private static class CachedState {
+
+        private final String state;
+        private final long time;
+
+        private CachedState(String state, long time) {
+            this.state = state;
+            this.time = time;
+        }
+    }
+
+    private StreamStateCache() {
+    }
+
+    /**
+     * Sets how long a state is considered valid.
+     *
+     * @param ttl in milliseconds, 0 disables the cache
+     */
+    static synchronized void setTtl(int ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("StreamStateCache.setTtl -> ttl must be >= 0");
+        }
+        StreamStateCache.ttl = ttl;
+        if (ttl == 0) {
+            states.clear();
+        }
+    }
+
+    /**
+     * (Async) Gets the state of the given stream from the cache, or from the
+     * server if the cached value is missing or expired.
+     *
+     * @param id of the stream
+     * @param onState callback that receives the state
+     * @param onFail callback for failure
+     */
+    static void fetchState(String id, OnComplete<String> onState, Runnable onFail) {
+        CachedState cached;
+        synchronized (StreamStateCache.class) {
+            cached = states.get(id);
+        }
+        if (cached != null && System.currentTimeMillis() - cached.time < ttl) {
+            CN.callSerially(() -> {
+                onState.completed(cached.state);
+            });
+            return;
+        }
+
+        WowzaLiveStream.requestState(id, state -> {
+            put(id, state);
+            onState.completed(state);
+        }, onFail);
+    }
+
+    /**
+     * Updates the cache with a state returned by the server, and notifies the
+     * StreamStateMonitor.
+     *
+     * @param id of the stream
+     * @param state of the stream, null values are ignored
+     */
+    static void put(String id, String state) {
+        if (id == null || state == null) {
+            return;
+        }
+        synchronized (StreamStateCache.class) {
+            if (ttl > 0) {
+                states.put(id, new CachedState(state, System.currentTimeMillis()));
+            }
+        }
+        StreamStateMonitor.observed(id, state);
+    }
+
+    /**
+     * Removes the cached state of the given stream.
+     *
+     * @param id of the stream
+     */
+    static synchronized void invalidate(String id) {
+        states.remove(id);
+    }
+
+}
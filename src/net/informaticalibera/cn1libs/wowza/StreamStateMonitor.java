@@ -0,0 +1,290 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.ui.CN;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Central monitor of the stream states: register the ids you are interested
+ * in with {@link #watch(String, StateListener)}, and you will be notified
+ * only when their state changes (for example stopped &rarr; starting &rarr;
+ * started), instead of polling them on your own timers.</p>
+ * <p>
+ * A single scheduled sweep checks all the watched streams, at most once per
+ * interval each. The states received by any other request of this CN1Lib
+ * (start, stop, fetchState, lists of streams, etc.) are used too, so the
+ * streams whose state was received recently are not requested again. When
+ * many streams are watched, the sweep uses the "live_streams" list, if the
+ * server includes the states in it.</p>
+ * <p>
+ * The listeners are invoked on the EDT.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class StreamStateMonitor {
+
+    /**
+     * Min number of streams to be checked in a sweep to use the list of all
+     * the streams instead of a state request for every stream.
+     */
+    private static final int BULK_THRESHOLD = 5;
+
+    private static long interval = 2000;
+    private static final Map<String, Watched> watched = new HashMap<>();
+    private static WowzaScheduler.Task sweepTask = null;
+    private static boolean sweeping = false;
+    // null until the first bulk request tells if the list includes the states
+    private static Boolean listIncludesStates = null;
+
+    /**
+     * Listener of the state changes of a stream.
+     */
+    public interface StateListener {
+
+        /**
+         * Invoked on the EDT when the state of a watched stream changes.
+         *
+         * @param id of the stream
+         * @param previousState last known state, null the first time the
+         * state is received after the watch call
+         * @param state new state
+         */
+        public void stateChanged(String id, String previousState, String state);
+    }
+
+    /**
+     * A watched stream.
+     */
+    private static class Watched {
+
+        private final List<StateListener> listeners = new ArrayList<>();
+        private String state = null;
+        private long receivedAt = 0;
+    }
+
+    private StreamStateMonitor() {
+    }
+
+    /**
+     * Starts watching the state of the given stream. The listener receives
+     * the current state as soon as it's known, and then every change of it.
+     *
+     * @param id of the stream
+     * @param listener to be notified
+     */
+    public static synchronized void watch(String id, StateListener listener) {
+        if (id == null || listener == null) {
+            throw new IllegalArgumentException("StreamStateMonitor.watch -> id and listener cannot be null");
+        }
+        Watched stream = watched.get(id);
+        if (stream == null) {
+            stream = new Watched();
+            watched.put(id, stream);
+        }
+        stream.listeners.add(listener);
+        if (stream.state != null) {
+            String state = stream.state;
+            CN.callSerially(() -> {
+                listener.stateChanged(id, null, state);
+            });
+        }
+        if (sweepTask == null) {
+            scheduleSweep(0);
+        }
+    }
+
+    /**
+     * Stops notifying the given listener about the given stream. When no
+     * stream is watched, the sweep stops.
+     *
+     * @param id of the stream
+     * @param listener previously passed to watch
+     */
+    public static synchronized void unwatch(String id, StateListener listener) {
+        Watched stream = watched.get(id);
+        if (stream == null) {
+            return;
+        }
+        stream.listeners.remove(listener);
+        if (stream.listeners.isEmpty()) {
+            watched.remove(id);
+        }
+        if (watched.isEmpty() && sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * Sets the interval between two sweeps (default 2 seconds).
+     *
+     * @param interval in milliseconds, it must be &gt;= 1000
+     */
+    public static synchronized void setInterval(long interval) {
+        if (interval < 1000) {
+            throw new IllegalArgumentException("StreamStateMonitor.setInterval -> interval must be >= 1000");
+        }
+        StreamStateMonitor.interval = interval;
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            scheduleSweep(interval);
+        }
+    }
+
+    /**
+     * Number of watched streams
+     *
+     * @return count
+     */
+    public static synchronized int getWatchedCount() {
+        return watched.size();
+    }
+
+    /**
+     * Last known state of a watched stream
+     *
+     * @param id of the stream
+     * @return state, or null if unknown or if the stream is not watched
+     */
+    public static synchronized String getState(String id) {
+        Watched stream = watched.get(id);
+        return stream != null ? stream.state : null;
+    }
+
+    /**
+     * Receives a state from the server, notifying the listeners if it's
+     * changed.
+     *
+     * @param id of the stream
+     * @param state of the stream
+     */
+    static void observed(String id, String state) {
+        String previousState;
+        List<StateListener> listeners;
+        synchronized (StreamStateMonitor.class) {
+            Watched stream = watched.get(id);
+            if (stream == null || state == null) {
+                return;
+            }
+            stream.receivedAt = System.currentTimeMillis();
+            if (state.equals(stream.state)) {
+                return;
+            }
+            previousState = stream.state;
+            stream.state = state;
+            listeners = new ArrayList<>(stream.listeners);
+        }
+        if (isVerboseLog()) {
+            Log.p("StreamStateMonitor -> The state of the stream with id " + id + " changed from " + previousState + " to " + state, Log.DEBUG);
+        }
+        CN.callSerially(() -> {
+            for (StateListener listener : listeners) {
+                listener.stateChanged(id, previousState, state);
+            }
+        });
+    }
+
+    private static void scheduleSweep(long initialDelay) {
+        sweepTask = WowzaScheduler.scheduleWithFixedDelay("StreamStateMonitor.sweep", () -> {
+            CN.callSerially(() -> {
+                sweep();
+            });
+        }, initialDelay, interval);
+    }
+
+    /**
+     * Requests the states of the watched streams that were not received in
+     * the last half interval.
+     */
+    private static void sweep() {
+        List<String> ids = new ArrayList<>();
+        boolean useList;
+        synchronized (StreamStateMonitor.class) {
+            if (sweeping) {
+                return; // the previous sweep is still waiting for some responses
+            }
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Watched> entry : watched.entrySet()) {
+                if (now - entry.getValue().receivedAt >= interval / 2) {
+                    ids.add(entry.getKey());
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            sweeping = true;
+            useList = ids.size() >= BULK_THRESHOLD && !Boolean.FALSE.equals(listIncludesStates);
+        }
+        if (!useList) {
+            probe(ids);
+            return;
+        }
+        // the list writes the received states through the StreamStateCache
+        WowzaLiveStream.fetchPoolSnapshot((List<WowzaStreamInfo> streams) -> {
+            List<String> missing = new ArrayList<>(ids);
+            boolean statesIncluded = false;
+            for (WowzaStreamInfo stream : streams) {
+                if (stream.isStateKnown()) {
+                    statesIncluded = true;
+                    missing.remove(stream.getId());
+                }
+            }
+            synchronized (StreamStateMonitor.class) {
+                listIncludesStates = statesIncluded;
+            }
+            probe(missing);
+        }, () -> {
+            probe(ids);
+        });
+    }
+
+    /**
+     * Requests the state of every given stream, ending the sweep when all
+     * the responses are received.
+     */
+    private static void probe(List<String> ids) {
+        if (ids.isEmpty()) {
+            endSweep();
+            return;
+        }
+        int[] pending = {ids.size()};
+        Runnable received = () -> {
+            pending[0] = pending[0] - 1;
+            if (pending[0] == 0) {
+                endSweep();
+            }
+        };
+        for (String id : ids) {
+            StreamStateCache.fetchState(id, (String state) -> {
+                received.run();
+            }, () -> {
+                if (isVerboseLog()) {
+                    Log.p("StreamStateMonitor -> Failed to get the state of the stream with id " + id, Log.WARNING);
+                }
+                received.run();
+            });
+        }
+    }
+
+    private static synchronized void endSweep() {
+        sweeping = false;
+    }
+
+}
@@ -13,12 +13,10 @@
 package net.informaticalibera.cn1libs.wowza;
 
 import com.codename1.components.ToastBar;
-import com.codename1.io.Log;
 import com.codename1.io.Util;
 import com.codename1.system.NativeLookup;
 import com.codename1.ui.CN;
 import com.codename1.ui.Display;
-import com.codename1.util.StringUtil;
 import com.sun.javafx.util.Utils;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,6 +29,7 @@ import java.util.List;
 public class Utilities {
 
     private static HMAC_SHA256 hmac = NativeLookup.create(HMAC_SHA256.class);
+    private static final WowzaHmacSha256 portableHmac = new WowzaHmacSha256();
 
     public static List<String> createList(String... items) {
         List<String> list = new ArrayList<>(items.length);
@@ -55,7 +54,10 @@ public class Utilities {
      */
     public static String generate_request_signature(String requestPath, String apiKey, long timeStamp) {
         // Make sure we only have the path.  No query parameters
-        requestPath = StringUtil.tokenize(requestPath, '?').get(0);
+        int query = requestPath.indexOf('?');
+        if (query >= 0) {
+            requestPath = requestPath.substring(0, query);
+        }
 
         // Make sure there is a leading slash
         if (!requestPath.startsWith("/")) {
@@ -68,15 +70,19 @@ public class Utilities {
         }
 
         // Make the complete request string
-        String data = timeStamp + ":" + requestPath + ":" + Util.xorDecode(apiKey);
+        String key = Util.xorDecode(apiKey);
+        String data = timeStamp + ":" + requestPath + ":" + key;
 
-        return hmac_sha256(Util.xorDecode(apiKey), data);
+        return hmac_sha256(key, data);
     }
 
     /**
      * HMAC-SHA256 generator. It gives the same output of
      * https://www.freeformatter.com/hmac-generator.html
      *
+     * It uses the native implementation if it's supported by the current
+     * platform, otherwise a portable Java implementation.
+     *
      * @param key is an unique piece of information that is used to compute the
      * HMAC and is known both by the sender and the receiver of the message.
      * @param message to be transmitted
@@ -87,7 +93,7 @@ public class Utilities {
             String code = hmac.HMAC_sha256(key, message);
             return code;
         } else {
-            throw new IllegalStateException("HMAC is not implemented for the current platform");
+            return portableHmac.sign(key, message);
         }
     }
 
@@ -119,12 +125,20 @@ public class Utilities {
     }
 
     /**
-     * Called by native code, it sends by email the current log.
+     * Called by native code, it sends the current log with the next batch of
+     * the WowzaLogShipper.
      */
     public static void sendLog() {
-        CN.callSerially(() -> {
-            Log.sendLogAsync();
-        });
+        WowzaLogShipper.requestUpload();
+    }
+
+    /**
+     * Called by native code when the broadcast fails to connect or to
+     * authenticate, it invalidates the cached transcoder config of its
+     * stream.
+     */
+    public static void broadcastFailed() {
+        GoCoder.broadcastFailed();
     }
 
     /**
@@ -0,0 +1,176 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate result of
+ * {@link WowzaLiveStream#startAll(java.util.Collection, int, java.lang.Integer, com.codename1.util.OnComplete)}
+ * and
+ * {@link WowzaLiveStream#stopAll(java.util.Collection, int, com.codename1.util.OnComplete)},
+ * with the outcome of every stream.
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaBatchResult {
+
+    private final Map<String, Outcome> outcomes = new LinkedHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+    private long totalTime = -1;
+
+    /**
+     * Outcome of the operation on a single stream.
+     */
+    public static class Outcome {
+
+        private final String id;
+        private final boolean successful;
+        private final String state;
+        private final long time;
+
+        Outcome(String id, boolean successful, String state, long time) {
+            this.id = id;
+            this.successful = successful;
+            this.state = state;
+            this.time = time;
+        }
+
+        /**
+         * Id of the stream
+         *
+         * @return id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns true if the stream was started (or stopped)
+         *
+         * @return true on success
+         */
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        /**
+         * Last known state of the stream
+         *
+         * @return state, or null if unknown
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * Milliseconds elapsed between the start (or stop) request of this
+         * stream and its outcome
+         *
+         * @return time
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return id + (successful ? " succeeded" : " failed") + " in " + time + " ms, state: " + state;
+        }
+    }
+
+    void add(Outcome outcome) {
+        outcomes.put(outcome.getId(), outcome);
+    }
+
+    void complete() {
+        totalTime = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * The outcomes of all the streams, in order of completion
+     *
+     * @return outcomes
+     */
+    public Collection<Outcome> getOutcomes() {
+        return Collections.unmodifiableCollection(outcomes.values());
+    }
+
+    /**
+     * The outcome of the given stream
+     *
+     * @param id of the stream
+     * @return outcome, or null if the stream was not included in the batch
+     */
+    public Outcome getOutcome(String id) {
+        return outcomes.get(id);
+    }
+
+    /**
+     * Ids of the streams successfully started (or stopped)
+     *
+     * @return list of ids
+     */
+    public List<String> getSucceeded() {
+        return getIds(true);
+    }
+
+    /**
+     * Ids of the streams that failed to start (or stop)
+     *
+     * @return list of ids
+     */
+    public List<String> getFailed() {
+        return getIds(false);
+    }
+
+    /**
+     * Returns true if all the streams were successfully started (or stopped)
+     *
+     * @return true if there are no failures
+     */
+    public boolean isAllSuccessful() {
+        return getFailed().isEmpty();
+    }
+
+    /**
+     * Milliseconds elapsed between the beginning of the batch and the
+     * outcome of its last stream
+     *
+     * @return total time
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    private List<String> getIds(boolean successful) {
+        List<String> ids = new ArrayList<>();
+        for (Outcome outcome : outcomes.values()) {
+            if (outcome.isSuccessful() == successful) {
+                ids.add(outcome.getId());
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "WowzaBatchResult{" + getSucceeded().size() + " succeeded, " + getFailed().size() + " failed, totalTime=" + totalTime + " ms}";
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Clock used for the timestamps of the signed requests (HMAC
+ * authentication), that must be within 15 seconds of the Wowza server clock.</p>
+ * <p>
+ * The offset between the device clock and the server clock is learned from
+ * the "Date" header of the responses, and added to the device time. Since
+ * that header has a precision of one second, the offset is changed only when
+ * the new estimate differs from it by more than MAX_ERROR: on devices with a
+ * synchronized clock it remains zero.</p>
+ *
+ * @author Francesco Galgani
+ */
+class WowzaClock {
+
+    /**
+     * Max error (milliseconds) of an estimate of the offset: the Date header
+     * is truncated to the second, and the response takes some time to arrive.
+     */
+    private static final long MAX_ERROR = 1500;
+
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private static long offset = 0;
+
+    private WowzaClock() {
+    }
+
+    /**
+     * Current time of the server clock, according to the learned offset
+     *
+     * @return milliseconds since the epoch
+     */
+    static synchronized long now() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    /**
+     * Learned offset between the server clock and the device clock
+     *
+     * @return milliseconds, positive if the device clock is behind
+     */
+    static synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Learns the offset from the Date header of a response.
+     *
+     * @param date value of the header, like "Sun, 06 Nov 1994 08:49:37 GMT",
+     * it can be null
+     * @param requestTime device time when the request was sent
+     * @param responseTime device time when the response headers were received
+     */
+    static void observe(String date, long requestTime, long responseTime) {
+        long serverTime = parseHttpDate(date);
+        if (serverTime < 0) {
+            return;
+        }
+        // the server time is truncated to the second, and it's taken about in the middle of the exchange
+        long estimate = serverTime + 500 - (requestTime + responseTime) / 2;
+        long previous;
+        synchronized (WowzaClock.class) {
+            previous = offset;
+            if (Math.abs(estimate - offset) <= MAX_ERROR) {
+                return;
+            }
+            offset = Math.abs(estimate) <= MAX_ERROR ? 0 : estimate;
+        }
+        if (isVerboseLog()) {
+            Log.p("WowzaClock -> The offset from the server clock changed from " + previous + " ms to " + getOffset() + " ms", Log.WARNING);
+        }
+    }
+
+    /**
+     * Parses a date in the RFC 1123 format used by HTTP.
+     *
+     * @param date like "Sun, 06 Nov 1994 08:49:37 GMT"
+     * @return milliseconds since the epoch, or -1 if the date is not valid
+     */
+    static long parseHttpDate(String date) {
+        if (date == null) {
+            return -1;
+        }
+        try {
+            String s = date.trim();
+            int start = s.indexOf(", ") + 2;
+            if (start < 2 || s.length() < start + 20) {
+                return -1;
+            }
+            int day = Integer.parseInt(s.substring(start, start + 2));
+            int monthIndex = MONTHS.indexOf(s.substring(start + 3, start + 6));
+            if (monthIndex < 0 || monthIndex % 3 != 0) {
+                return -1;
+            }
+            int month = monthIndex / 3 + 1;
+            int year = Integer.parseInt(s.substring(start + 7, start + 11));
+            int hours = Integer.parseInt(s.substring(start + 12, start + 14));
+            int minutes = Integer.parseInt(s.substring(start + 15, start + 17));
+            int seconds = Integer.parseInt(s.substring(start + 18, start + 20));
+            // days from the civil date, see http://howardhinnant.github.io/date_algorithms.html
+            int y = month <= 2 ? year - 1 : year;
+            int era = y / 400;
+            int yearOfEra = y - era * 400;
+            int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            long days = (long) era * 146097 + dayOfEra - 719468;
+            return ((days * 24 + hours) * 60 + minutes) * 60000L + seconds * 1000L;
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.ConnectionRequest;
+import com.codename1.io.Log;
+import com.codename1.io.Util;
+import com.codename1.io.rest.Response;
+import com.codename1.ui.CN;
+import com.codename1.util.OnComplete;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * HTTP exchange with the Wowza Streaming Cloud API: the response is parsed
+ * while it's read from the network (with a WowzaJsonDecoder), without
+ * buffering the whole body in a String.</p>
+ * <p>
+ * A GET is sent as a conditional request: the ETag and Last-Modified
+ * validators of the responses are remembered for every url (together with
+ * the parsed object), and sent back with If-None-Match and
+ * If-Modified-Since. When the server replies with "304 Not Modified", the
+ * callback gets the object parsed from the previous response, without
+ * downloading and parsing the body again.</p>
+ * <p>
+ * It's used instead of the RequestBuilder because the latter doesn't give
+ * access to the response headers and to the response stream, and it doesn't
+ * report the network errors to the error handler.</p>
+ *
+ * @author Francesco Galgani
+ */
+class WowzaConnection<T> extends ConnectionRequest {
+
+    /**
+     * Max number of urls whose validators are remembered: the least recently
+     * used are forgotten first.
+     */
+    private static final int MAX_VALIDATORS = 200;
+
+    private static final Map<String, Validators<?>> validators = new LinkedHashMap<String, Validators<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Validators<?>> eldest) {
+            return size() > MAX_VALIDATORS;
+        }
+    };
+
+    private final String key;
+    private final String body;
+    private final Parser<T> parser;
+    private final OnComplete<T> callback;
+    private final ErrorHandler errorHandler;
+    private final long requestTime = System.currentTimeMillis();
+
+    private String etag = null;
+    private String lastModified = null;
+    private long retryAfter = -1;
+    private boolean notModified = false;
+    private int errorCode = 0;
+    private String errorMessage = null;
+    private String errorBody = null;
+    private T result = null;
+
+    /**
+     * The validators of a response, with the object parsed from it.
+     */
+    private static class Validators<T> {
+
+        private final String etag;
+        private final String lastModified;
+        private final T result;
+
+        private Validators(String etag, String lastModified, T result) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Parser of the body of a successful response.
+     */
+    interface Parser<T> {
+
+        /**
+         * Identifies the parsed data: requests with the same api and the same
+         * kind of parser can share the same response.
+         *
+         * @return kind
+         */
+        String getKind();
+
+        /**
+         * (Sync) Parses the given json, invoked on the network thread.
+         *
+         * @param input json
+         * @return the parsed object, or null if the json is not valid
+         * @throws IOException if the json cannot be read
+         */
+        T parse(Reader input) throws IOException;
+    }
+
+    /**
+     * Receiver of the errors.
+     */
+    interface ErrorHandler {
+
+        /**
+         * Invoked on the EDT on error.
+         *
+         * @param response with response code 0 if the server cannot be
+         * reached
+         * @param retryAfter milliseconds to wait before retrying, from the
+         * Retry-After header, or -1 if the response doesn't have it
+         */
+        void onError(Response<String> response, long retryAfter);
+    }
+
+    /**
+     * Creates a request, to be added to the NetworkManager queue.
+     *
+     * @param method GET, POST, PUT or PATCH
+     * @param api path of the request, relative to the api version
+     * @param body json body of the request, or null
+     * @param parser of the response
+     * @param callback invoked on the EDT with the parsed object (null if the
+     * response cannot be parsed)
+     * @param errorHandler invoked on the EDT on error
+     */
+    WowzaConnection(String method, String api, String body, Parser<T> parser, OnComplete<T> callback, ErrorHandler errorHandler) {
+        this.key = parser.getKind() + " " + api;
+        this.body = body;
+        this.parser = parser;
+        this.callback = callback;
+        this.errorHandler = errorHandler;
+        setUrl(WowzaLiveStream.createUrl(api));
+        setPost(!"GET".equals(method));
+        setHttpMethod(method);
+        setContentType("application/json");
+        setReadResponseForErrors(true);
+        setDuplicateSupported(true);
+        for (Map.Entry<String, String> header : WowzaLiveStream.createHeaders(api).entrySet()) {
+            addRequestHeader(header.getKey(), header.getValue());
+        }
+        Validators<T> previous = "GET".equals(method) ? getValidators() : null;
+        if (previous != null) {
+            if (previous.etag != null) {
+                addRequestHeader("If-None-Match", previous.etag);
+            } else {
+                addRequestHeader("If-Modified-Since", previous.lastModified);
+            }
+        }
+    }
+
+    /**
+     * The validators of the previous response to the same url, decoded by the
+     * same kind of parser (that's part of the key, so the cast is safe).
+     */
+    @SuppressWarnings("unchecked")
+    private Validators<T> getValidators() {
+        synchronized (validators) {
+            return (Validators<T>) validators.get(key);
+        }
+    }
+
+    /**
+     * Parses the value of a Retry-After header, that can be a number of
+     * seconds or a date.
+     *
+     * @param value like "120" or "Fri, 31 Dec 1999 23:59:59 GMT", it can be
+     * null
+     * @return milliseconds to wait, or -1 if the value is not valid
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String s = value.trim();
+        try {
+            long seconds = Long.parseLong(s);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException ex) {
+            long date = WowzaClock.parseHttpDate(s);
+            return date >= 0 ? Math.max(0, date - WowzaClock.now()) : -1;
+        }
+    }
+
+    @Override
+    protected void readHeaders(Object connection) throws IOException {
+        etag = getHeader(connection, "ETag");
+        lastModified = getHeader(connection, "Last-Modified");
+        retryAfter = parseRetryAfter(getHeader(connection, "Retry-After"));
+        WowzaClock.observe(getHeader(connection, "Date"), requestTime, System.currentTimeMillis());
+    }
+
+    @Override
+    protected void buildRequestBody(OutputStream os) throws IOException {
+        if (body != null) {
+            os.write(body.getBytes("UTF-8"));
+        }
+    }
+
+    @Override
+    protected void handleErrorResponseCode(int code, String message) {
+        if (code == 304) {
+            notModified = true;
+        } else {
+            errorCode = code;
+            errorMessage = message;
+        }
+    }
+
+    @Override
+    protected void handleException(Exception err) {
+        if (isVerboseLog()) {
+            Log.e(err);
+        }
+        CN.callSerially(() -> {
+            errorHandler.onError(new Response<>(0, null, err.getMessage()), -1);
+        });
+    }
+
+    @Override
+    protected void readResponse(InputStream input) throws IOException {
+        if (errorCode != 0) {
+            errorBody = Util.readToString(input, "UTF-8");
+            return;
+        }
+        if (notModified) {
+            return;
+        }
+        try {
+            // an IOException here is a network error, handled by handleException
+            result = parser.parse(new InputStreamReader(input, "UTF-8"));
+        } catch (RuntimeException ex) {
+            if (isVerboseLog()) {
+                Log.e(ex);
+            }
+            result = null;
+        }
+        if (isPost()) {
+            return;
+        }
+        synchronized (validators) {
+            if (result != null && (etag != null || lastModified != null)) {
+                validators.put(key, new Validators<>(etag, lastModified, result));
+            } else {
+                validators.remove(key);
+            }
+        }
+    }
+
+    @Override
+    protected void postResponse() {
+        if (errorCode != 0) {
+            errorHandler.onError(new Response<>(errorCode, errorBody, errorMessage), retryAfter);
+        } else if (notModified) {
+            Validators<T> previous = getValidators();
+            if (previous != null) {
+                if (isVerboseLog()) {
+                    Log.p("WowzaConnection -> (Code 304) Not Modified, using the previous response of " + key, Log.DEBUG);
+                }
+                callback.completed(previous.result);
+            } else {
+                errorHandler.onError(new Response<>(304, null, "Not Modified"), -1);
+            }
+        } else {
+            callback.completed(result);
+        }
+    }
+
+}
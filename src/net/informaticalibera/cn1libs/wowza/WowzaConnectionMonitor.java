@@ -0,0 +1,275 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.ConnectionRequest;
+import com.codename1.io.Log;
+import com.codename1.io.NetworkManager;
+import com.codename1.ui.CN;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Warm-up and keep-alive of the connections to the Wowza Streaming Cloud
+ * API, with an estimate of the connections opened and reused.</p>
+ * <p>
+ * Call {@link #warmUp(Runnable)} at the app start: the DNS resolution and
+ * the TCP/TLS handshakes are done before the first real request (like
+ * create or start), that can find them already cached by the native HTTP
+ * stack. {@link #startKeepAlive(long)} sends a request now and then during a
+ * live event, so the server doesn't close the connection for inactivity.</p>
+ * <p>
+ * Codename One doesn't expose the sockets used by the native HTTP stack, so
+ * the counters are not a measurement but a model: a request is counted as
+ * reusing a connection if an exchange with the server ended less than the
+ * idle timeout before (and its connection is not already used by another
+ * request in flight), otherwise as opening a new one. Only the latencies are
+ * measured, grouped according to that model.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaConnectionMonitor {
+
+    private static long idleTimeout = 30000;
+    // end times of the exchanges whose connection is idle
+    private static final List<Long> idleConnections = new ArrayList<>();
+    private static int opened = 0;
+    private static int reused = 0;
+    private static int openedEnded = 0;
+    private static int reusedEnded = 0;
+    private static long openedLatency = 0;
+    private static long reusedLatency = 0;
+    private static WowzaScheduler.Task keepAliveTask = null;
+
+    /**
+     * A request sent to the server.
+     */
+    static class Exchange {
+
+        private final long startTime = System.currentTimeMillis();
+        private final boolean reusing;
+        private boolean ended = false;
+
+        private Exchange(boolean reusing) {
+            this.reusing = reusing;
+        }
+
+        /**
+         * Invoked when the response is received.
+         */
+        void end() {
+            synchronized (WowzaConnectionMonitor.class) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                long now = System.currentTimeMillis();
+                if (reusing) {
+                    reusedEnded++;
+                    reusedLatency += now - startTime;
+                } else {
+                    openedEnded++;
+                    openedLatency += now - startTime;
+                }
+                idleConnections.add(now);
+            }
+        }
+    }
+
+    private WowzaConnectionMonitor() {
+    }
+
+    /**
+     * Registers a request that is being sent.
+     *
+     * @return the exchange, to be ended when the response is received
+     */
+    static synchronized Exchange begin() {
+        long now = System.currentTimeMillis();
+        // the connections idle for too long are closed by the server
+        for (int i = idleConnections.size() - 1; i >= 0; i--) {
+            if (now - idleConnections.get(i) > idleTimeout) {
+                idleConnections.remove(i);
+            }
+        }
+        boolean reusing = !idleConnections.isEmpty();
+        if (reusing) {
+            idleConnections.remove(idleConnections.size() - 1);
+            reused++;
+        } else {
+            opened++;
+        }
+        return new Exchange(reusing);
+    }
+
+    /**
+     * (Async) Opens a connection to the Wowza Streaming Cloud API with a
+     * lightweight request, so the next requests can reuse it.
+     *
+     * @param onReady callback invoked when the connection is ready (also if
+     * the server cannot be reached), it can be null
+     */
+    public static void warmUp(Runnable onReady) {
+        Exchange exchange = begin();
+        ConnectionRequest request = new ConnectionRequest() {
+            @Override
+            protected void readHeaders(Object connection) throws IOException {
+                // a lightweight way to learn the offset of the server clock
+                WowzaClock.observe(getHeader(connection, "Date"), exchange.startTime, System.currentTimeMillis());
+            }
+
+            @Override
+            protected void handleErrorResponseCode(int code, String message) {
+                // any response is fine, the connection is open
+            }
+
+            @Override
+            protected void handleException(Exception err) {
+                exchange.end();
+                if (isVerboseLog()) {
+                    Log.p("WowzaConnectionMonitor.warmUp -> The server cannot be reached: " + err.getMessage(), Log.WARNING);
+                }
+                WowzaLogShipper.networkStatus(false);
+                if (onReady != null) {
+                    onReady.run();
+                }
+            }
+
+            @Override
+            protected void postResponse() {
+                exchange.end();
+                WowzaLogShipper.networkStatus(true);
+                if (isVerboseLog()) {
+                    Log.p("WowzaConnectionMonitor.warmUp -> Connection ready in " + (System.currentTimeMillis() - exchange.startTime) + " ms", Log.DEBUG);
+                }
+                if (onReady != null) {
+                    onReady.run();
+                }
+            }
+        };
+        request.setUrl(WowzaLiveStream.createUrl(""));
+        request.setPost(false);
+        request.setHttpMethod("HEAD");
+        request.setDuplicateSupported(true);
+        request.setPriority(ConnectionRequest.PRIORITY_HIGH);
+        NetworkManager.getInstance().addToQueue(request);
+    }
+
+    /**
+     * Sends a warm-up request every period, if there are no other requests,
+     * so the connection is not closed for inactivity. It's useful during a
+     * live event, to have a ready connection for the stop request. No request
+     * is sent while the app is minimized, anyway the keep-alive should be
+     * stopped in the stop() method of the app and started again in its
+     * start() method:
+     * <pre>
+     * public void stop() {
+     *     WowzaConnectionMonitor.stopKeepAlive();
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param period in milliseconds, it should be less than the idle timeout
+     */
+    public static synchronized void startKeepAlive(long period) {
+        stopKeepAlive();
+        keepAliveTask = WowzaScheduler.scheduleWithFixedDelay("WowzaConnectionMonitor.keepAlive", () -> {
+            boolean idle;
+            synchronized (WowzaConnectionMonitor.class) {
+                long lastEnd = 0;
+                for (Long end : idleConnections) {
+                    lastEnd = Math.max(lastEnd, end);
+                }
+                idle = System.currentTimeMillis() - lastEnd >= period;
+            }
+            if (idle && !CN.isMinimized()) {
+                warmUp(null);
+            }
+        }, period, period);
+    }
+
+    /**
+     * Stops the keep-alive requests, to be invoked when the live event ends
+     * and when the app goes in background.
+     */
+    public static synchronized void stopKeepAlive() {
+        if (keepAliveTask != null) {
+            keepAliveTask.cancel();
+            keepAliveTask = null;
+        }
+    }
+
+    /**
+     * Sets after how long an idle connection is considered closed by the
+     * server (default 30 seconds), used by the model of the counters.
+     *
+     * @param idleTimeout in milliseconds
+     */
+    public static synchronized void setIdleTimeout(long idleTimeout) {
+        WowzaConnectionMonitor.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Estimated number of requests that opened a new connection, according
+     * to the idle timeout
+     *
+     * @return count
+     */
+    public static synchronized int getEstimatedOpened() {
+        return opened;
+    }
+
+    /**
+     * Estimated number of requests that reused a keep-alive connection,
+     * according to the idle timeout
+     *
+     * @return count
+     */
+    public static synchronized int getEstimatedReused() {
+        return reused;
+    }
+
+    /**
+     * Average latency of the requests counted by getEstimatedOpened()
+     *
+     * @return milliseconds, or -1 if there are no such requests
+     */
+    public static synchronized long getEstimatedOpenedLatency() {
+        return openedEnded > 0 ? openedLatency / openedEnded : -1;
+    }
+
+    /**
+     * Average latency of the requests counted by getEstimatedReused()
+     *
+     * @return milliseconds, or -1 if there are no such requests
+     */
+    public static synchronized long getEstimatedReusedLatency() {
+        return reusedEnded > 0 ? reusedLatency / reusedEnded : -1;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public static synchronized void resetCounters() {
+        opened = 0;
+        reused = 0;
+        openedEnded = 0;
+        reusedEnded = 0;
+        openedLatency = 0;
+        reusedLatency = 0;
+    }
+
+}
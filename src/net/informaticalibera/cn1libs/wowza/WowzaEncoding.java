@@ -0,0 +1,92 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+/**
+ * UTF-8 and hex encoding into reusable buffers, shared by the portable
+ * WowzaHmacSha256 and by the Android and JavaSE implementations of
+ * HMAC_SHA256, so that all of them sign the same bytes and return the same
+ * lowercase hex string.
+ *
+ * @author Francesco Galgani
+ */
+class WowzaEncoding {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private WowzaEncoding() {
+    }
+
+    /**
+     * Returns a buffer big enough for the UTF-8 encoding of the given string.
+     *
+     * @param buffer the current buffer
+     * @param s string to be encoded
+     * @return the given buffer, or a new bigger one
+     */
+    static byte[] ensureUtf8Capacity(byte[] buffer, String s) {
+        int maxLength = s.length() * 3;
+        return buffer.length >= maxLength ? buffer : new byte[maxLength];
+    }
+
+    /**
+     * Encodes the given string as UTF-8, an unpaired surrogate is encoded as
+     * '?'.
+     *
+     * @param s string to be encoded
+     * @param buffer destination, see ensureUtf8Capacity
+     * @return number of bytes written
+     */
+    static int encodeUtf8(String s, byte[] buffer) {
+        int chars = s.length();
+        int length = 0;
+        for (int i = 0; i < chars; i++) {
+            int c = s.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c >= 0xd800 && c <= 0xdbff && i + 1 < chars && s.charAt(i + 1) >= 0xdc00 && s.charAt(i + 1) <= 0xdfff) {
+                int codePoint = 0x10000 + ((c - 0xd800) << 10) + (s.charAt(++i) - 0xdc00);
+                buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (c >= 0xd800 && c <= 0xdfff) {
+                buffer[length++] = (byte) '?'; // unpaired surrogate
+            } else {
+                buffer[length++] = (byte) (0xe0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Lowercase hex encoding of the given bytes.
+     *
+     * @param bytes to be encoded
+     * @param hex destination, of at least twice the length of bytes
+     * @return the hex string
+     */
+    static String toHex(byte[] bytes, char[] hex) {
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex, 0, bytes.length * 2);
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency breakdown of
+ * {@link GoCoder#goLive(int, int, net.informaticalibera.cn1libs.wowza.WowzaLiveStreamParams, java.lang.Integer, com.codename1.util.OnComplete)}:
+ * the time spent in every stage and the total time. Since some stages run
+ * concurrently, the total time is less than the sum of the stages.
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaGoLiveReport {
+
+    /**
+     * Getting a stopped stream from the pool.
+     */
+    public static final String STREAM_FROM_POOL = "streamFromPool";
+
+    /**
+     * Starting the stream, until the "started" state.
+     */
+    public static final String START = "start";
+
+    /**
+     * Fetching the transcoder config (GoCoderBroadcastConfig).
+     */
+    public static final String CONFIG = "config";
+
+    /**
+     * Initializing the camera view.
+     */
+    public static final String CAMERA = "camera";
+
+    /**
+     * Starting the broadcast with the GoCoder SDK.
+     */
+    public static final String BROADCAST = "broadcast";
+
+    private final long startTime = System.currentTimeMillis();
+    private final Map<String, Long> stageTimes = new LinkedHashMap<>();
+    private long totalTime = -1;
+    private String id = null;
+    private GoCoderBroadcastConfig config = null;
+
+    /**
+     * Tracks the duration of the given stage.
+     *
+     * @param stage name
+     * @param promise of the stage
+     * @return the same promise
+     */
+    <T> WowzaPromise<T> time(String stage, WowzaPromise<T> promise) {
+        long stageStart = System.currentTimeMillis();
+        promise.onSuccess((T v) -> {
+            record(stage, stageStart);
+        });
+        return promise;
+    }
+
+    synchronized void record(String stage, long stageStart) {
+        stageTimes.put(stage, System.currentTimeMillis() - stageStart);
+    }
+
+    synchronized void complete(String id, GoCoderBroadcastConfig config) {
+        this.id = id;
+        this.config = config;
+        totalTime = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Milliseconds spent in the given stage
+     *
+     * @param stage one of STREAM_FROM_POOL, START, CONFIG, CAMERA, BROADCAST
+     * @return time, or -1 if the stage is not completed
+     */
+    public synchronized long getStageTime(String stage) {
+        Long time = stageTimes.get(stage);
+        return time != null ? time : -1;
+    }
+
+    /**
+     * Milliseconds between the goLive call and the start of the broadcast
+     *
+     * @return total time
+     */
+    public synchronized long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Sum of the times of all the stages, that is the time needed to run them
+     * one after the other
+     *
+     * @return sequential time
+     */
+    public synchronized long getSequentialTime() {
+        long sum = 0;
+        for (Long time : stageTimes.values()) {
+            sum += time;
+        }
+        return sum;
+    }
+
+    /**
+     * Id of the stream that is broadcasting
+     *
+     * @return id
+     */
+    public synchronized String getId() {
+        return id;
+    }
+
+    /**
+     * Config used for the broadcast
+     *
+     * @return config
+     */
+    public synchronized GoCoderBroadcastConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WowzaGoLiveReport{id=" + id + ", stages=" + stageTimes + ", totalTime=" + totalTime + " ms, sequentialTime=" + getSequentialTime() + " ms}";
+    }
+
+}
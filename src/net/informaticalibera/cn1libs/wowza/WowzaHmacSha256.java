@@ -0,0 +1,245 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+/**
+ * <p>
+ * Portable HMAC-SHA256 (RFC 2104, FIPS 180-4) written in plain Java, so it
+ * works on every Codename One port, also where the HMAC_SHA256 native
+ * interface is not implemented (JavaScript, J2ME, RIM, Windows).</p>
+ * <p>
+ * The SHA-256 states after the inner and outer padded keys are computed only
+ * when the key changes, and all the buffers are reused: signing a message
+ * doesn't allocate anything except the returned String. The key and the
+ * message are encoded as UTF-8. The output is a lowercase hex string, like
+ * the native implementations.</p>
+ *
+ * @author Francesco Galgani
+ */
+class WowzaHmacSha256 {
+
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final int[] state = new int[8];
+    private final int[] innerState = new int[8];
+    private final int[] outerState = new int[8];
+    private final int[] w = new int[64];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] digest = new byte[32];
+    private final char[] hex = new char[64];
+    private byte[] buffer = new byte[256];
+    private String key = null;
+
+    /**
+     * Computes the HMAC-SHA256 of the given message.
+     *
+     * @param key secret key
+     * @param message to be signed
+     * @return lowercase hex string of 64 chars
+     */
+    synchronized String sign(String key, String message) {
+        if (!key.equals(this.key)) {
+            setKey(encode(key));
+            this.key = key;
+        }
+        return sign(encode(message));
+    }
+
+    /**
+     * Computes the HMAC-SHA256 of binary data, without caching the key. It's
+     * used by the tests with the RFC 4231 vectors, whose keys and messages
+     * are not valid UTF-8.
+     *
+     * @param key secret key
+     * @param message to be signed
+     * @return lowercase hex string of 64 chars
+     */
+    synchronized String sign(byte[] key, byte[] message) {
+        int capacity = Math.max(key.length, message.length);
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+        }
+        System.arraycopy(key, 0, buffer, 0, key.length);
+        setKey(key.length);
+        this.key = null;
+        System.arraycopy(message, 0, buffer, 0, message.length);
+        return sign(message.length);
+    }
+
+    /**
+     * Signs the first length bytes of the buffer with the current key.
+     */
+    private String sign(int length) {
+        // inner hash: H((K ^ ipad) || message)
+        System.arraycopy(innerState, 0, state, 0, 8);
+        update(buffer, length, BLOCK_SIZE);
+        stateToBytes(digest);
+
+        // outer hash: H((K ^ opad) || inner hash)
+        System.arraycopy(outerState, 0, state, 0, 8);
+        update(digest, digest.length, BLOCK_SIZE);
+        stateToBytes(digest);
+        return WowzaEncoding.toHex(digest, hex);
+    }
+
+    /**
+     * Precomputes the states after the inner and the outer padded keys.
+     *
+     * @param length of the key, that is in the first bytes of the buffer
+     */
+    private void setKey(int length) {
+        if (length > BLOCK_SIZE) {
+            // keys longer than a block are hashed
+            System.arraycopy(INITIAL_STATE, 0, state, 0, 8);
+            update(buffer, length, 0);
+            stateToBytes(buffer);
+            length = digest.length;
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = (byte) ((i < length ? buffer[i] : 0) ^ 0x36);
+        }
+        System.arraycopy(INITIAL_STATE, 0, state, 0, 8);
+        compress(block, 0);
+        System.arraycopy(state, 0, innerState, 0, 8);
+
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = (byte) ((i < length ? buffer[i] : 0) ^ 0x5c);
+        }
+        System.arraycopy(INITIAL_STATE, 0, state, 0, 8);
+        compress(block, 0);
+        System.arraycopy(state, 0, outerState, 0, 8);
+
+        // the key must not remain in the buffers
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = 0;
+        }
+    }
+
+    /**
+     * Encodes the given string as UTF-8 in the reusable buffer.
+     *
+     * @return number of bytes
+     */
+    private int encode(String s) {
+        buffer = WowzaEncoding.ensureUtf8Capacity(buffer, s);
+        return WowzaEncoding.encodeUtf8(s, buffer);
+    }
+
+    /**
+     * Hashes the given data and the final padding, starting from the current
+     * state.
+     *
+     * @param data to be hashed
+     * @param length of the data
+     * @param processed number of bytes already hashed in the current state
+     */
+    private void update(byte[] data, int length, int processed) {
+        int offset = 0;
+        while (length - offset >= BLOCK_SIZE) {
+            compress(data, offset);
+            offset += BLOCK_SIZE;
+        }
+        int remaining = length - offset;
+        System.arraycopy(data, offset, block, 0, remaining);
+        block[remaining] = (byte) 0x80;
+        if (remaining + 1 > BLOCK_SIZE - 8) {
+            for (int i = remaining + 1; i < BLOCK_SIZE; i++) {
+                block[i] = 0;
+            }
+            compress(block, 0);
+            remaining = -1;
+        }
+        for (int i = remaining + 1; i < BLOCK_SIZE - 8; i++) {
+            block[i] = 0;
+        }
+        long bits = ((long) processed + length) * 8;
+        for (int i = 0; i < 8; i++) {
+            block[BLOCK_SIZE - 1 - i] = (byte) (bits >>> (8 * i));
+        }
+        compress(block, 0);
+    }
+
+    private void stateToBytes(byte[] out) {
+        for (int i = 0; i < 8; i++) {
+            out[i * 4] = (byte) (state[i] >>> 24);
+            out[i * 4 + 1] = (byte) (state[i] >>> 16);
+            out[i * 4 + 2] = (byte) (state[i] >>> 8);
+            out[i * 4 + 3] = (byte) state[i];
+        }
+    }
+
+    /**
+     * SHA-256 compression function of a 64 bytes block.
+     */
+    private void compress(byte[] data, int offset) {
+        for (int i = 0; i < 16; i++) {
+            int p = offset + i * 4;
+            w[i] = (data[p] << 24) | ((data[p + 1] & 0xff) << 16) | ((data[p + 2] & 0xff) << 8) | (data[p + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            int w15 = w[i - 15];
+            int w2 = w[i - 2];
+            int s0 = ((w15 >>> 7) | (w15 << 25)) ^ ((w15 >>> 18) | (w15 << 14)) ^ (w15 >>> 3);
+            int s1 = ((w2 >>> 17) | (w2 << 15)) ^ ((w2 >>> 19) | (w2 << 13)) ^ (w2 >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+        for (int i = 0; i < 64; i++) {
+            int s1 = ((e >>> 6) | (e << 26)) ^ ((e >>> 11) | (e << 21)) ^ ((e >>> 25) | (e << 7));
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = ((a >>> 2) | (a << 30)) ^ ((a >>> 13) | (a << 19)) ^ ((a >>> 22) | (a << 10));
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+}
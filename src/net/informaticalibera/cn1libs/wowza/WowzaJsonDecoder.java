@@ -0,0 +1,372 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.JSONParseCallback;
+import com.codename1.io.JSONParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Streaming decoder of the json responses of the Wowza Streaming Cloud: the
+ * values are read directly from the parser events into small value objects,
+ * without building the Map representation of the whole json (with boxed
+ * numbers, nested maps and lists). The fields that are not needed are
+ * skipped.</p>
+ * <p>
+ * A decoder is stateful, so use a new instance for every response.</p>
+ *
+ * @author Francesco Galgani
+ */
+abstract class WowzaJsonDecoder<T> implements JSONParseCallback, WowzaConnection.Parser<T> {
+
+    private final ArrayList<String> blocks = new ArrayList<>();
+
+    @Override
+    public T parse(Reader input) throws IOException {
+        JSONParser.parse(input, this);
+        return getResult();
+    }
+
+    @Override
+    public String getKind() {
+        return getClass().getName();
+    }
+
+    /**
+     * The decoded object
+     *
+     * @return decoded object, or null if not available
+     */
+    abstract T getResult();
+
+    /**
+     * Invoked for every primitive value of the json.
+     *
+     * @param key of the value
+     * @param value as string, null if the json value is null
+     * @param depth of the object that contains the value (1 is the root)
+     * @param block name of the object that contains the value
+     */
+    abstract void value(String key, String value, int depth, String block);
+
+    /**
+     * Invoked at the end of every object.
+     *
+     * @param depth of the object (1 is the root)
+     */
+    void endObject(int depth) {
+    }
+
+    @Override
+    public void startBlock(String block) {
+        blocks.add(block);
+    }
+
+    @Override
+    public void endBlock(String block) {
+        endObject(blocks.size());
+        if (!blocks.isEmpty()) {
+            blocks.remove(blocks.size() - 1);
+        }
+    }
+
+    @Override
+    public void startArray(String arrayName) {
+    }
+
+    @Override
+    public void endArray(String arrayName) {
+    }
+
+    @Override
+    public void stringToken(String tok) {
+    }
+
+    @Override
+    public void numericToken(double tok) {
+    }
+
+    @Override
+    public void booleanToken(boolean tok) {
+    }
+
+    @Override
+    public void keyValue(String key, String value) {
+        if (key != null) {
+            String block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            value(key, "null".equals(value) ? null : value, blocks.size(), block);
+        }
+    }
+
+    @Override
+    public boolean isAlive() {
+        return true;
+    }
+
+    /**
+     * Decodes the "live_streams" list into WowzaStreamInfo objects.
+     */
+    static class StreamList extends WowzaJsonDecoder<List<WowzaStreamInfo>> {
+
+        private final List<WowzaStreamInfo> streams = new ArrayList<>();
+        private String id;
+        private String name;
+        private String state;
+        private String connection_code;
+        private String broadcast_location;
+
+        @Override
+        List<WowzaStreamInfo> getResult() {
+            return Collections.unmodifiableList(streams);
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth != 2) {
+                return;
+            }
+            if ("id".equals(key)) {
+                id = value;
+            } else if ("name".equals(key)) {
+                name = value;
+            } else if ("state".equals(key)) {
+                state = value;
+            } else if ("connection_code".equals(key)) {
+                connection_code = value;
+            } else if ("broadcast_location".equals(key)) {
+                broadcast_location = value;
+            }
+        }
+
+        @Override
+        void endObject(int depth) {
+            if (depth == 2) {
+                if (id != null) {
+                    streams.add(new WowzaStreamInfo(id, name, state, connection_code, broadcast_location));
+                }
+                id = null;
+                name = null;
+                state = null;
+                connection_code = null;
+                broadcast_location = null;
+            }
+        }
+    }
+
+    /**
+     * Decodes a page of the "live_streams" list, with the total number of
+     * streams if the server includes the "pagination" object.
+     */
+    static class StreamPage extends WowzaJsonDecoder<WowzaStreamPager.Page> {
+
+        private final StreamList streams = new StreamList();
+        private int totalRecords = -1;
+
+        @Override
+        WowzaStreamPager.Page getResult() {
+            return new WowzaStreamPager.Page(streams.getResult(), totalRecords);
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth == 2 && "pagination".equals(block)) {
+                if ("total_records".equals(key) && value != null) {
+                    totalRecords = (int) Double.parseDouble(value);
+                }
+            } else {
+                streams.value(key, value, depth, block);
+            }
+        }
+
+        @Override
+        void endObject(int depth) {
+            streams.endObject(depth);
+        }
+    }
+
+    /**
+     * Decodes the "live_stream" object returned by the creation, the start
+     * and the stop of a stream, null if the response has no "live_stream".
+     * The fields missing in the response (like the id in the response of a
+     * start) are null.
+     */
+    static class LiveStream extends WowzaJsonDecoder<WowzaStreamInfo> {
+
+        private boolean found = false;
+        private String id;
+        private String name;
+        private String state;
+        private String connection_code;
+        private String broadcast_location;
+
+        @Override
+        WowzaStreamInfo getResult() {
+            return found ? new WowzaStreamInfo(id, name, state, connection_code, broadcast_location) : null;
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth != 2 || !"live_stream".equals(block)) {
+                return;
+            }
+            found = true;
+            if ("id".equals(key)) {
+                id = value;
+            } else if ("name".equals(key)) {
+                name = value;
+            } else if ("state".equals(key)) {
+                state = value;
+            } else if ("connection_code".equals(key)) {
+                connection_code = value;
+            } else if ("broadcast_location".equals(key)) {
+                broadcast_location = value;
+            }
+        }
+    }
+
+    /**
+     * Decodes a single field of the "live_stream" object.
+     */
+    static class StreamField extends WowzaJsonDecoder<String> {
+
+        private final String field;
+        private String result = null;
+
+        StreamField(String field) {
+            this.field = field;
+        }
+
+        @Override
+        public String getKind() {
+            return super.getKind() + ":" + field;
+        }
+
+        @Override
+        String getResult() {
+            return result;
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth == 2 && field.equals(key)) {
+                result = value;
+            }
+        }
+    }
+
+    /**
+     * Decodes the "connected" value of the "live_stream" stats.
+     */
+    static class ConnectionStatus extends WowzaJsonDecoder<String> {
+
+        private String result = null;
+
+        @Override
+        String getResult() {
+            return result;
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth == 3 && "connected".equals(block) && "value".equals(key)) {
+                result = value;
+            }
+        }
+    }
+
+    /**
+     * Decodes the "description" of the "transcoder" object: an empty string
+     * if the transcoder has no description, null if the response has no
+     * transcoder.
+     */
+    static class TranscoderDescription extends WowzaJsonDecoder<String> {
+
+        private boolean transcoder = false;
+        private String description = null;
+
+        @Override
+        String getResult() {
+            if (!transcoder) {
+                return null;
+            }
+            return description != null ? description : "";
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth == 2 && "transcoder".equals(block)) {
+                transcoder = true;
+                if ("description".equals(key)) {
+                    description = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the "transcoder" object into a GoCoderBroadcastConfig.
+     */
+    static class Transcoder extends WowzaJsonDecoder<GoCoderBroadcastConfig> {
+
+        private final String id;
+        private String hostAddress;
+        private int portNumber = -1;
+        private String applicationName;
+        private String streamName;
+        private String username;
+        private String password;
+
+        Transcoder(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getKind() {
+            return super.getKind() + ":" + id;
+        }
+
+        @Override
+        GoCoderBroadcastConfig getResult() {
+            if (hostAddress == null || portNumber < 0 || applicationName == null || streamName == null) {
+                return null;
+            }
+            return new GoCoderBroadcastConfig(id, hostAddress, portNumber, applicationName, streamName, username, password);
+        }
+
+        @Override
+        void value(String key, String value, int depth, String block) {
+            if (depth != 2) {
+                return;
+            }
+            if ("domain_name".equals(key)) {
+                hostAddress = value;
+            } else if ("source_port".equals(key)) {
+                portNumber = value != null ? (int) Double.parseDouble(value) : -1;
+            } else if ("application_name".equals(key)) {
+                applicationName = value;
+            } else if ("stream_name".equals(key)) {
+                streamName = value;
+            } else if ("username".equals(key)) {
+                username = value;
+            } else if ("password".equals(key)) {
+                password = value;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.ui.CN;
+import com.codename1.util.OnComplete;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Starts or stops many streams, with at most maxConcurrency start (or stop)
+ * requests in flight at the same time.</p>
+ * <p>
+ * The streams in the "starting" state are checked by a single polling loop,
+ * whose interval grows from 1 to 10 seconds, instead of a WowzaStartPoller
+ * for every stream.</p>
+ * <p>
+ * All the callbacks run on the EDT, so the state of the batch doesn't need
+ * synchronization.</p>
+ *
+ * @author Francesco Galgani
+ */
+class WowzaLifecycleBatch {
+
+    private static final long MIN_INTERVAL = 1000;
+    private static final long MAX_INTERVAL = 10000;
+    private static final double BACKOFF_FACTOR = 1.5;
+
+    private final boolean start;
+    private final List<String> queue;
+    private final int maxConcurrency;
+    private final long maxTime;
+    private final OnComplete<WowzaBatchResult> onComplete;
+    private final WowzaBatchResult result = new WowzaBatchResult();
+
+    // request time of every stream, until its outcome is known
+    private final Map<String, Long> requestTimes = new LinkedHashMap<>();
+    // request time of the streams in the "starting" state
+    private final Map<String, Long> starting = new LinkedHashMap<>();
+    private int remaining;
+    private int inFlight = 0;
+    private boolean polling = false;
+    private long lastInterval = 0;
+
+    /**
+     * Creates a batch.
+     *
+     * @param start true to start the streams, false to stop them
+     * @param ids of the streams
+     * @param maxConcurrency max number of start (or stop) requests in flight
+     * @param maxTime timeout of the starting of every stream, in milliseconds
+     * @param onComplete invoked when the outcome of all the streams is known
+     */
+    WowzaLifecycleBatch(boolean start, Collection<String> ids, int maxConcurrency, long maxTime, OnComplete<WowzaBatchResult> onComplete) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("WowzaLifecycleBatch -> maxConcurrency must be >= 1");
+        }
+        this.start = start;
+        this.queue = new ArrayList<>();
+        for (String id : ids) {
+            if (id == null) {
+                throw new IllegalArgumentException("WowzaLifecycleBatch -> ids cannot contain null");
+            }
+            if (!queue.contains(id)) {
+                queue.add(id);
+            }
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxTime = maxTime;
+        this.onComplete = onComplete;
+        this.remaining = queue.size();
+    }
+
+    /**
+     * Sends the first requests.
+     */
+    void run() {
+        CN.callSerially(() -> {
+            if (remaining == 0) {
+                complete();
+            } else {
+                dispatch();
+            }
+        });
+    }
+
+    private void dispatch() {
+        while (inFlight < maxConcurrency && !queue.isEmpty()) {
+            String id = queue.remove(0);
+            inFlight++;
+            requestTimes.put(id, System.currentTimeMillis());
+            if (start) {
+                WowzaLiveStream.requestStart(id, (String state) -> {
+                    inFlight--;
+                    starting.put(id, requestTimes.get(id));
+                    startPolling();
+                    dispatch();
+                }, () -> {
+                    inFlight--;
+                    finish(id, false, null);
+                    dispatch();
+                });
+            } else {
+                WowzaLiveStream.stop(id, (String stoppedId) -> {
+                    inFlight--;
+                    finish(id, true, "stopped");
+                    dispatch();
+                }, () -> {
+                    inFlight--;
+                    finish(id, false, null);
+                    dispatch();
+                });
+            }
+        }
+    }
+
+    private void startPolling() {
+        // a stream that just joined the polling is checked again at the min
+        // interval, without inheriting the backoff of the older ones
+        lastInterval = 0;
+        if (!polling) {
+            polling = true;
+            scheduleCheck();
+        }
+    }
+
+    private void scheduleCheck() {
+        if (lastInterval == 0) {
+            lastInterval = MIN_INTERVAL;
+        } else {
+            lastInterval = Math.min(MAX_INTERVAL, (long) (lastInterval * BACKOFF_FACTOR));
+        }
+        WowzaScheduler.schedule("WowzaLifecycleBatch", () -> {
+            CN.callSerially(() -> {
+                check();
+            });
+        }, lastInterval);
+    }
+
+    /**
+     * Checks the state of all the starting streams, then schedules the next
+     * check if some streams are still starting.
+     */
+    private void check() {
+        List<String> ids = new ArrayList<>(starting.keySet());
+        int[] pending = {ids.size()};
+        Runnable checked = () -> {
+            pending[0] = pending[0] - 1;
+            if (pending[0] == 0) {
+                if (starting.isEmpty()) {
+                    polling = false;
+                } else {
+                    scheduleCheck();
+                }
+            }
+        };
+        for (String id : ids) {
+            if (System.currentTimeMillis() - starting.get(id) > maxTime) {
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaLiveStream.startAll -> Timeout reached while starting the stream with id " + id, Log.ERROR);
+                }
+                finish(id, false, "starting");
+                checked.run();
+                continue;
+            }
+            WowzaLiveStream.fetchState(id, (String startedId) -> {
+                WowzaStartPoller.recordWarmUpTime(id, System.currentTimeMillis() - starting.get(id));
+                finish(id, true, "started");
+                checked.run();
+            }, (String startingId) -> {
+                checked.run();
+            }, (String otherId) -> {
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaLiveStream.startAll -> Invalid state after starting the stream with id " + id, Log.ERROR);
+                }
+                finish(id, false, null);
+                checked.run();
+            }, () -> {
+                finish(id, false, null);
+                checked.run();
+            });
+        }
+    }
+
+    private void finish(String id, boolean successful, String state) {
+        starting.remove(id);
+        Long requestTime = requestTimes.remove(id);
+        if (requestTime == null) {
+            return; // outcome already known
+        }
+        result.add(new WowzaBatchResult.Outcome(id, successful, state, System.currentTimeMillis() - requestTime));
+        remaining--;
+        if (remaining == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        result.complete();
+        if (isVerboseLog()) {
+            Log.p("WowzaLiveStream." + (start ? "startAll" : "stopAll") + " -> " + result, Log.DEBUG);
+        }
+        onComplete.completed(result);
+    }
+
+}
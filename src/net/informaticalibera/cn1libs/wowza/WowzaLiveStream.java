@@ -14,18 +14,16 @@ package net.informaticalibera.cn1libs.wowza;
 
 import com.codename1.io.JSONParser;
 import com.codename1.io.Log;
-import com.codename1.io.Util;
 import com.codename1.io.rest.ErrorCodeHandler;
-import com.codename1.io.rest.RequestBuilder;
 import com.codename1.io.rest.Response;
-import com.codename1.io.rest.Rest;
+import com.codename1.ui.CN;
 import com.codename1.util.OnComplete;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
 
 /**
@@ -54,8 +52,11 @@ import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
  */
 public class WowzaLiveStream {
 
-    private static final String url = "https://api.cloud.wowza.com";
-    private static final String apiVersion = "/api/v1.3/";
+    private static final String DEFAULT_URL = "https://api.cloud.wowza.com";
+    private static final String DEFAULT_API_VERSION = "/api/v1.3/";
+
+    private static String url = DEFAULT_URL;
+    private static String apiVersion = DEFAULT_API_VERSION;
 
     private static final List<String> broadcastLocations = Utilities.createList("asia_pacific_australia", "asia_pacific_india", "asia_pacific_japan", "asia_pacific_singapore", "asia_pacific_s_korea", "asia_pacific_taiwan", "eu_belgium", "eu_germany", "eu_ireland", "south_america_brazil", "us_central_iowa", "us_east_s_carolina", "us_east_virginia", "us_west_california", "us_west_oregon");
     private static final List<String> broadcastLocationsOnlyPassthrough = Utilities.createList("asia_pacific_taiwan", "eu_belgium", "us_central_iowa", "us_east_s_carolina");
@@ -143,86 +144,80 @@ public class WowzaLiveStream {
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.create -> (Code 401) Unauthorized, failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.create -> (Code 401) Unauthorized, failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else if (v.getResponseCode() == 422) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.create -> (Code 422) Unprocessable Entity, failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.create -> (Code 422) Unprocessable Entity, failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.create -> Unknow response with code " + v.getResponseCode() + ", failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.create -> Unknow response with code " + v.getResponseCode() + ", failed to create live stream with name " + params.name.get() + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map<String, Object> responseData = v.getResponseData();
-                        Map<String, Object> response = (Map<String, Object>) responseData.get("live_stream");
-                        name = (String) response.get("name");
-                        id = (String) response.get("id");
-                        connection_code = (String) response.get("connection_code");
+                .fetchDecoded(new WowzaJsonDecoder.LiveStream(), (WowzaStreamInfo response) -> {
+                    if (response == null || response.getId() == null) {
                         if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.create -> (Code 201) Successfully created live stream with name " + name, Log.DEBUG);
+                            WowzaLogShipper.log("WowzaLiveStream.create -> (Code 201) Error: invalid live stream returned by the server, failed to create live stream with name " + params.name.get(), Log.ERROR);
                         }
-                        onComplete.completed(instance);
+                        onFail.run();
+                        return;
+                    }
+                    // success
+                    name = response.getName();
+                    id = response.getId();
+                    connection_code = response.getConnection_code();
+                    StreamStateCache.put(id, response.getState());
+                    WowzaStartPoller.setLocation(id, params.broadcast_location.get());
+                    WowzaPersistentCache.addStreamId(id);
+                    if (isVerboseLog()) {
+                        Log.p("WowzaLiveStream.create -> (Code 201) Successfully created live stream with name " + name, Log.DEBUG);
                     }
+                    onComplete.completed(instance);
                 });
 
     }
 
-    static RequestBuilder postRequest(String api) {
-        if (hmacAuthentication) {
-            return Rest.post(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-timestamp", System.currentTimeMillis() + "")
-                    .header("wsc-signature", Utilities.generate_request_signature(apiVersion + api, WowzaAccount.getRestKey(), System.currentTimeMillis()));
-        } else {
-            return Rest.post(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-api-key", Util.xorDecode(WowzaAccount.getRestKey()));
-        }
+    static WowzaRequest postRequest(String api) {
+        return new WowzaRequest("POST", api);
     }
 
-    static RequestBuilder getRequest(String api) {
-        if (hmacAuthentication) {
-            return Rest.get(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-timestamp", System.currentTimeMillis() + "")
-                    .header("wsc-signature", Utilities.generate_request_signature(apiVersion + api, WowzaAccount.getRestKey(), System.currentTimeMillis()));
-        } else {
-            return Rest.get(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-api-key", Util.xorDecode(WowzaAccount.getRestKey()));
-        }
+    static WowzaRequest getRequest(String api) {
+        return new WowzaRequest("GET", api);
+    }
+
+    static WowzaRequest putRequest(String api) {
+        return new WowzaRequest("PUT", api);
+    }
+
+    static WowzaRequest patchRequest(String api) {
+        return new WowzaRequest("PATCH", api);
     }
 
-    static RequestBuilder putRequest(String api) {
+    static String createUrl(String api) {
+        return url + apiVersion + api;
+    }
+
+    /**
+     * The authentication headers of a request to the given api.
+     */
+    static Map<String, String> createHeaders(String api) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("wsc-access-key", WowzaAccount.getAccessKey());
         if (hmacAuthentication) {
-            return Rest.put(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-timestamp", System.currentTimeMillis() + "")
-                    .header("wsc-signature", Utilities.generate_request_signature(apiVersion + api, WowzaAccount.getRestKey(), System.currentTimeMillis()));
+            // the same timestamp must be sent and signed, and it must match the server clock
+            long timeStamp = WowzaClock.now();
+            headers.put("wsc-timestamp", timeStamp + "");
+            headers.put("wsc-signature", WowzaRequestSigner.sign(apiVersion + api, timeStamp));
         } else {
-            return Rest.put(url + apiVersion + api)
-                    .jsonContent()
-                    .header("wsc-access-key", WowzaAccount.getAccessKey())
-                    .header("wsc-api-key", Util.xorDecode(WowzaAccount.getRestKey()));
+            headers.put("wsc-api-key", WowzaRequestSigner.getKey());
         }
+        return headers;
     }
 
     private void throwExceptionIfIllegalParams(WowzaLiveStreamParams params) {
@@ -332,50 +327,124 @@ public class WowzaLiveStream {
     }
 
     /**
-     * (Async) Fetches the list of all stream ids for the current account
+     * (Async) Fetches the list of all stream ids for the current account.
      *
      * @param onComplete is a callback for success
      * @param onFail is a callback for failure
      */
     public static void fetchAllLiveStreams(OnComplete<List<String>> onComplete, Runnable onFail) {
+        fetchPoolSnapshot((List<WowzaStreamInfo> streams) -> {
+            ArrayList<String> idList = new ArrayList<>(streams.size());
+            for (WowzaStreamInfo stream : streams) {
+                idList.add(stream.getId());
+            }
+            onComplete.completed(idList);
+        }, onFail);
+    }
+
+    /**
+     * (Async) Fetches the list of all stream ids for the current account,
+     * like {@link #fetchAllLiveStreams(com.codename1.util.OnComplete, java.lang.Runnable)},
+     * but using the {@link WowzaPersistentCache}: a cached list is returned
+     * immediately, and revalidated in background if it's older than its ttl.
+     * So the list can be out of date (it can contain deleted streams and miss
+     * the ones created by other devices): use it only when a fast answer is
+     * more important than an exact one.
+     *
+     * @param onComplete is a callback for success
+     * @param onFail is a callback for failure
+     */
+    public static void fetchAllLiveStreamsCached(OnComplete<List<String>> onComplete, Runnable onFail) {
+        WowzaPersistentCache.Entry<List<String>> cached = WowzaPersistentCache.getStreamIds();
+        if (cached != null) {
+            if (isVerboseLog()) {
+                Log.p("WowzaLiveStream.fetchAllLiveStreams -> Using the cached list of " + cached.value.size() + " streams", Log.DEBUG);
+            }
+            CN.callSerially(() -> {
+                onComplete.completed(new ArrayList<>(cached.value));
+            });
+            if (WowzaPersistentCache.isStreamIdsStale(cached)) {
+                // revalidation in background (fetchPoolSnapshot updates the cache)
+                fetchPoolSnapshot(streams -> {
+                }, () -> {
+                });
+            }
+            return;
+        }
+        fetchAllLiveStreams(onComplete, onFail);
+    }
+
+    /**
+     * <p>
+     * (Async) Fetches a snapshot of all the streams of the current account
+     * with a single request.</p>
+     * <p>
+     * Every WowzaStreamInfo contains the fields that the "live_streams" list
+     * returns: fields not included in the list (like the state, with the
+     * current Wowza API version) are null, so use
+     * {@link WowzaStreamInfo#isStateKnown()} before relying on the state.</p>
+     *
+     * @param onComplete is a callback for success, the list is unmodifiable
+     * because it's shared with the other callers of the same request
+     * @param onFail is a callback for failure
+     */
+    public static void fetchPoolSnapshot(OnComplete<List<WowzaStreamInfo>> onComplete, Runnable onFail) {
         getRequest("live_streams")
                 .onErrorCodeString(new ErrorCodeHandler<String>() {
                     @Override
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchAllLiveStreams -> (Code 401) Unauthorized, failed to get all streams for the current account, string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchPoolSnapshot -> (Code 401) Unauthorized, failed to get all streams for the current account, string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchAllLiveStreams -> Unknow response with code " + v.getResponseCode() + ", failed to get all streams for the current account, string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchPoolSnapshot -> Unknow response with code " + v.getResponseCode() + ", failed to get all streams for the current account, string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        List<Map> response = (List<Map>) responseData.get("live_streams");
-                        ArrayList<String> idList = new ArrayList<>();
-                        for (Map stream : response) {
-                            idList.add((String) stream.get("id"));
-                        }
+                .fetchDecoded(new WowzaJsonDecoder.StreamList(), (List<WowzaStreamInfo> streams) -> {
+                    // success
+                    if (streams == null) {
                         if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.fetchAllLiveStreams -> (Code 200) Successfully get all streams for the current account", Log.DEBUG);
+                            WowzaLogShipper.log("WowzaLiveStream.fetchPoolSnapshot -> (Code 200) Error: invalid list of streams returned by the server", Log.ERROR);
                         }
-                        onComplete.completed(idList);
+                        onFail.run();
+                        return;
+                    }
+                    ArrayList<String> ids = new ArrayList<>(streams.size());
+                    for (WowzaStreamInfo info : streams) {
+                        StreamStateCache.put(info.getId(), info.getState());
+                        WowzaStartPoller.setLocation(info.getId(), info.getBroadcast_location());
+                        ids.add(info.getId());
                     }
+                    WowzaPersistentCache.putStreamIds(ids);
+                    if (isVerboseLog()) {
+                        Log.p("WowzaLiveStream.fetchPoolSnapshot -> (Code 200) Successfully get all streams for the current account", Log.DEBUG);
+                    }
+                    onComplete.completed(streams);
                 });
 
     }
 
+    /**
+     * Creates a pager over the streams of the current account, that requests
+     * the "live_streams" list one page at a time, see
+     * {@link WowzaStreamPager}. Prefer it to fetchAllLiveStreams and
+     * fetchPoolSnapshot for accounts with many streams.
+     *
+     * @param pageSize number of streams per page, between 1 and
+     * WowzaStreamPager.MAX_PAGE_SIZE
+     * @return a new pager, no request is sent until its next() method is
+     * invoked
+     */
+    public static WowzaStreamPager pageLiveStreams(int pageSize) {
+        return new WowzaStreamPager(pageSize);
+    }
+
     /**
      * Fetches a thumbnail url for the given stream; the thumbnail url can be
      * null if there is no stream data.
@@ -393,37 +462,29 @@ public class WowzaLiveStream {
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchThumbnail -> (Code 401) Unauthorized, failed to get thumbnail for the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchThumbnail -> (Code 401) Unauthorized, failed to get thumbnail for the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchThumbnail -> Unknow response with code " + v.getResponseCode() + ", failed to get thumbnail for the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchThumbnail -> Unknow response with code " + v.getResponseCode() + ", failed to get thumbnail for the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String url = (String) response.get("thumbnail_url");
-                        if ("null".equals(url) || url == null) {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchThumbnail -> (Code 200) Warning: thumbnail url for the given stream id " + id + " is null", Log.WARNING);
-                            }
-                            onNull.run();
-                        } else {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchThumbnail -> (Code 200) Successfully get thumbnail url for the given stream id " + id, Log.DEBUG);
-                            }
-                            onComplete.completed(url);
+                .fetchDecoded(new WowzaJsonDecoder.StreamField("thumbnail_url"), (String url) -> {
+                    // success
+                    if ("null".equals(url) || url == null) {
+                        if (isVerboseLog()) {
+                            Log.p("WowzaLiveStream.fetchThumbnail -> (Code 200) Warning: thumbnail url for the given stream id " + id + " is null", Log.WARNING);
+                        }
+                        onNull.run();
+                    } else {
+                        if (isVerboseLog()) {
+                            Log.p("WowzaLiveStream.fetchThumbnail -> (Code 200) Successfully get thumbnail url for the given stream id " + id, Log.DEBUG);
                         }
+                        onComplete.completed(url);
                     }
                 });
     }
@@ -457,60 +518,31 @@ public class WowzaLiveStream {
             throw new IllegalStateException("WowzaLiveStreaming.fetchState -> id of the stream cannot be null");
         }
 
-        getRequest("live_streams/" + id + "/state")
-                .onErrorCodeString(new ErrorCodeHandler<String>() {
-                    @Override
-                    public void onError(Response<String> v) {
-                        if (v.getResponseCode() == 401) {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
-                        } else {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
-                        }
-                    }
-                })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String state = (String) response.get("state");
-                        if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.fetchState -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
-                        }
-                        if ("started".equals(state)) {
-                            if (isStarted != null) {
-                                isStarted.completed(id);
-                            }
-                        } else if ("stopped".equals(state)) {
-                            if (isStopped != null) {
-                                isStopped.completed(id);
-                            }
-                        } else if ("starting".equals(state)) {
-                            if (isStarting != null) {
-                                isStarting.completed(id);
-                            }
-                        } else if ("stopping".equals(state)) {
-                            if (isStopping != null) {
-                                isStopping.completed(id);
-                            }
-                        } else if ("resetting".equals(state)) {
-                            if (isResetting != null) {
-                                isResetting.completed(id);
-                            }
-                        } else {
-                            throw new IllegalStateException("WowzaLiveStream.fetchState -> The server returned the invalid state \"" + state + "\" for the stream id " + id);
-                        }
-                    }
-                });
+        StreamStateCache.fetchState(id, state -> {
+            if ("started".equals(state)) {
+                if (isStarted != null) {
+                    isStarted.completed(id);
+                }
+            } else if ("stopped".equals(state)) {
+                if (isStopped != null) {
+                    isStopped.completed(id);
+                }
+            } else if ("starting".equals(state)) {
+                if (isStarting != null) {
+                    isStarting.completed(id);
+                }
+            } else if ("stopping".equals(state)) {
+                if (isStopping != null) {
+                    isStopping.completed(id);
+                }
+            } else if ("resetting".equals(state)) {
+                if (isResetting != null) {
+                    isResetting.completed(id);
+                }
+            } else {
+                throw new IllegalStateException("WowzaLiveStream.fetchState -> The server returned the invalid state \"" + state + "\" for the stream id " + id);
+            }
+        }, onFail);
     }
 
     /**
@@ -541,50 +573,21 @@ public class WowzaLiveStream {
             return;
         }
 
-        getRequest("live_streams/" + id + "/state")
-                .onErrorCodeString(new ErrorCodeHandler<String>() {
-                    @Override
-                    public void onError(Response<String> v) {
-                        if (v.getResponseCode() == 401) {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
-                        } else {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
-                        }
-                    }
-                })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String state = (String) response.get("state");
-                        if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.fetchState -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
-                        }
-                        if ("started".equals(state)) {
-                            if (isStarted != null) {
-                                isStarted.completed(id);
-                            }
-                        } else if ("starting".equals(state)) {
-                            if (isStarting != null) {
-                                isStarting.completed(id);
-                            }
-                        } else {
-                            if (isOtherState != null) {
-                                isOtherState.completed(id);
-                            }
-                        }
-                    }
-                });
+        StreamStateCache.fetchState(id, state -> {
+            if ("started".equals(state)) {
+                if (isStarted != null) {
+                    isStarted.completed(id);
+                }
+            } else if ("starting".equals(state)) {
+                if (isStarting != null) {
+                    isStarting.completed(id);
+                }
+            } else {
+                if (isOtherState != null) {
+                    isOtherState.completed(id);
+                }
+            }
+        }, onFail);
     }
 
     /**
@@ -612,48 +615,76 @@ public class WowzaLiveStream {
             return;
         }
 
+        StreamStateCache.fetchState(id, state -> {
+            if ("stopped".equals(state)) {
+                if (isStopped != null) {
+                    isStopped.completed(id);
+                }
+            } else {
+                if (isOtherState != null) {
+                    isOtherState.completed(id);
+                }
+            }
+        }, onFail);
+    }
+    
+    /**
+     * (Async) Requests the state of the given stream to the server, bypassing
+     * the StreamStateCache.
+     *
+     * @param id of the given stream
+     * @param onState is a callback that receives the state
+     * @param onFail is a callback for failure
+     */
+    static void requestState(String id, OnComplete<String> onState, Runnable onFail) {
         getRequest("live_streams/" + id + "/state")
                 .onErrorCodeString(new ErrorCodeHandler<String>() {
                     @Override
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchState -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchState -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchState -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String state = (String) response.get("state");
+                .fetchDecoded(new WowzaJsonDecoder.StreamField("state"), (String state) -> {
+                    // success
+                    if (state == null) {
                         if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.fetchState -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
-                        }
-                        if ("stopped".equals(state)) {
-                            if (isStopped != null) {
-                                isStopped.completed(id);
-                            }
-                        } else {
-                            if (isOtherState != null) {
-                                isOtherState.completed(id);
-                            }
+                            WowzaLogShipper.log("WowzaLiveStream.fetchState -> (Code 200) Error: no state returned by the server for the stream with id " + id, Log.ERROR);
                         }
+                        onFail.run();
+                        return;
                     }
+                    if (isVerboseLog()) {
+                        Log.p("WowzaLiveStream.fetchState -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
+                    }
+                    onState.completed(state);
                 });
     }
-    
+
+    /**
+     * Sets for how long the state of a stream returned by the server is reused
+     * by fetchState, start and getStreamFromPool, to avoid redundant requests
+     * when the same state is asked several times in a short period. By
+     * default the cache is disabled (0), so fetchState always asks the server.
+     * The cached state of a stream is discarded when a start or stop request
+     * is sent for it. Concurrent requests for the state of the same stream
+     * always share a single REST request.
+     *
+     * @param ttl in milliseconds, 0 to disable the cache
+     */
+    public static void setStateCacheTtl(int ttl) {
+        StreamStateCache.setTtl(ttl);
+    }
+
     /**
      * <p>
      * (Async) Fetches the connection state of the given stream, providing a minimal set of
@@ -678,39 +709,29 @@ public class WowzaLiveStream {
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchConnectionState -> (Code 401) Unauthorized, failed to get the connection state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchConnectionState -> (Code 401) Unauthorized, failed to get the connection state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.fetchConnectionState -> Unknow response with code " + v.getResponseCode() + ", failed to get the connection state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.fetchConnectionState -> Unknow response with code " + v.getResponseCode() + ", failed to get the connection state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        Map connected = (Map) response.get("connected");
-                        
-                        String status = (String) connected.get("value");
-                        if (isVerboseLog()) {
-                            Log.p("WowzaLiveStream.fetchConnectionState -> (Code 200) Successfully get the status " + status + " for the stream with id " + id, Log.DEBUG);
+                .fetchDecoded(new WowzaJsonDecoder.ConnectionStatus(), (String status) -> {
+                    // success
+                    if (isVerboseLog()) {
+                        Log.p("WowzaLiveStream.fetchConnectionState -> (Code 200) Successfully get the status " + status + " for the stream with id " + id, Log.DEBUG);
+                    }
+                    if ("Yes".equals(status)) {
+                        if (isFine != null) {
+                            isFine.completed(id);
                         }
-                        if ("Yes".equals(status)) {
-                            if (isFine != null) {
-                                isFine.completed(id);
-                            }
-                        } else {
-                            if (isNotFine != null) {
-                                isNotFine.completed(id);
-                            }
+                    } else {
+                        if (isNotFine != null) {
+                            isNotFine.completed(id);
                         }
                     }
                 });
@@ -734,7 +755,8 @@ public class WowzaLiveStream {
      * <p>
      * About the performance, this methods performs sequential REST requests
      * until it finds a stopped stream, so it can require some seconds before
-     * launching the onComplete callback.</p>
+     * launching the onComplete callback. Use the overload with the
+     * maxConcurrentProbes param to check more streams in parallel.</p>
      *
      * @param startingSize of your pool: if your pool size is less than your
      * startingSize, then this method adds a new stream to the pool
@@ -749,111 +771,228 @@ public class WowzaLiveStream {
      * @param onFail callback invoked on failure
      */
     public static void getStreamFromPool(int startingSize, int threshold, WowzaLiveStreamParams defaultParams, OnComplete<String> onComplete, Runnable onFail) {
-        fetchAllLiveStreams((List<String> ids) -> {
-            // success
-            int poolSize = ids.size();
+        getStreamFromPool(startingSize, threshold, defaultParams, 1, onComplete, onFail);
+    }
+
+    /**
+     * <p>
+     * (Async) Get a stopped stream from your pool and manage your pool accoring
+     * to the provided startingSize and threshold.</p>
+     * <p>
+     * About the performance, this methods checks the state of up to
+     * maxConcurrentProbes streams at the same time: the onComplete callback is
+     * invoked as soon as the first stopped stream is found, without waiting
+     * for the other pending requests, whose results are discarded. Using 1 as
+     * maxConcurrentProbes gives the sequential behaviour. The states already
+     * included in the list of streams don't require further requests.</p>
+     * <p>
+     * The streams are requested one page at a time (see
+     * {@link #pageLiveStreams(int)}) and the paging stops as soon as a stopped
+     * stream is found. If the server doesn't report the total number of
+     * streams, the pool size is known (and so a new stream can be added) only
+     * if the last page was received.</p>
+     *
+     * @param startingSize of your pool: if your pool size is less than your
+     * startingSize, then this method adds a new stream to the pool
+     * @param threshold is a percentage of active streams: when the threshold is
+     * exceeded, a new stream is always added, regardless of the startingSize
+     * value
+     * @param defaultParams can be used to customize the parameters (except the
+     * name) of the new stream that could be created, it can be null to use the
+     * default parameters
+     * @param maxConcurrentProbes is the max number of state requests in flight
+     * at the same time, it must be &gt;= 1
+     * @param onComplete callback invoked on success, the passed value is the id
+     * of a stopped stream of the pool
+     * @param onFail callback invoked on failure
+     */
+    public static void getStreamFromPool(int startingSize, int threshold, WowzaLiveStreamParams defaultParams, int maxConcurrentProbes, OnComplete<String> onComplete, Runnable onFail) {
+        if (maxConcurrentProbes < 1) {
+            throw new IllegalArgumentException("WowzaLiveStreaming.getStreamFromPool -> maxConcurrentProbes must be >= 1");
+        }
+
+        WowzaLiveStreamParams params;
+        if (defaultParams != null) {
+            params = defaultParams.copy();
+        } else {
+            params = new WowzaLiveStreamParams();
+        }
+        WowzaStreamPager pager = pageLiveStreams(WowzaStreamPager.DEFAULT_PAGE_SIZE);
+        // streams with an unknown state of the received pages, still to be probed
+        ArrayList<String> ids = new ArrayList<>();
+        boolean[] done = {false};
+        boolean[] paging = {false};
+        int[] usedStreams = {0};
+        int[] nextIndex = {0};
+        int[] inFlight = {0};
+        Runnable[] probeStreams = {null};
+        Runnable[] nextPage = {null};
+
+        Runnable noStoppedStreams = () -> {
+            // there are no stopped stream, so we try to create a new one
+            done[0] = true;
+            params.name.set("Stream-" + (pager.getReceivedCount() + 1));
+            createStreamForPool(params, onComplete, onFail);
+        };
+
+        OnComplete<String> stoppedStreamFound = (String streamId) -> {
+            done[0] = true;
+            pager.close();
+            int poolSize = pager.getKnownTotalCount();
             if (isVerboseLog()) {
-                Log.p("WowzaLiveStream.getStreamFromPool -> Pool size: " + poolSize, Log.DEBUG);
+                Log.p("WowzaLiveStream.getStreamFromPool -> Found the stopped stream: " + streamId + " after receiving " + pager.getReceivedCount() + " streams of a pool of " + (poolSize >= 0 ? poolSize + "" : "unknown size") + " streams", Log.DEBUG);
             }
-            int[] usedStreams = {0};
-            int[] indexId = {0};
-            Runnable[] stateOfStream = {null};
-            stateOfStream[0] = () -> {
-                String newStreamName = "Stream-" + (poolSize + 1);
-                WowzaLiveStreamParams params;
-                if (defaultParams != null) {
-                    params = defaultParams;
-                } else {
-                    params = new WowzaLiveStreamParams();
-                }
-                params.name.set(newStreamName);
-
-                String idToBeChecked = null;
-                if (poolSize > 0) {
-                    idToBeChecked = ids.get(indexId[0]);
-                }
+            onComplete.completed(streamId);
+            // does we need to create a new stream? Only if the pool size is known,
+            // the received streams would underestimate it
+            if (poolSize >= 0) {
+                params.name.set("Stream-" + (poolSize + 1));
+                growPoolIfNeeded(params, poolSize, startingSize, usedStreams[0], threshold);
+            }
+        };
 
-                WowzaLiveStream.fetchState(idToBeChecked, streamId -> {
+        probeStreams[0] = () -> {
+            while (!done[0] && inFlight[0] < maxConcurrentProbes && nextIndex[0] < ids.size()) {
+                String id = ids.get(nextIndex[0]);
+                nextIndex[0] = nextIndex[0] + 1;
+                inFlight[0] = inFlight[0] + 1;
+                WowzaLiveStream.fetchState(id, streamId -> {
                     // we got a stopped stream
-                    if (isVerboseLog()) {
-                        Log.p("WowzaLiveStream.getStreamFromPool -> Found the stopped stream: " + streamId + ", which index is " + indexId[0] + " (starting from 0) of a pool of " + poolSize + " streams", Log.DEBUG);
-                    }
-                    onComplete.completed(streamId);
-                    // does we need to create a new stream?
-                    WowzaLiveStream stream = new WowzaLiveStream();
-                    if (poolSize < startingSize) {
-                        stream.create(params, newStream -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + newStream.getName() + " and id " + newStream.getId() + ", because poolSize < startingSize (" + poolSize + " < " + startingSize + ")", Log.DEBUG);
-                            }
-                        }, () -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Failed to create new stream", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                        });
-                    } else if (usedStreams[0] * 100 / poolSize > threshold) {
-                        stream.create(params, newStream -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + newStream.getName() + " and id " + newStream.getId() + ", because " + (usedStreams[0] * 100 / poolSize) + "% of usedStreams > threshold (" + threshold + "%)", Log.DEBUG);
-                            }
-                        }, () -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Failed to create new stream", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                        });
+                    inFlight[0] = inFlight[0] - 1;
+                    if (done[0]) {
+                        return; // another probe already completed the request
                     }
+                    stoppedStreamFound.completed(streamId);
                 }, streamId -> {
                     // the stream is not stopped
+                    inFlight[0] = inFlight[0] - 1;
+                    if (done[0]) {
+                        return;
+                    }
                     if (isVerboseLog()) {
                         Log.p("WowzaLiveStream.getStreamFromPool -> The stream with id " + streamId + " is not stopped.", Log.DEBUG);
                     }
                     usedStreams[0] = usedStreams[0] + 1; // we count the used streams
-                    indexId[0] = indexId[0] + 1; // we increase the index of the pool
-                    if (indexId[0] >= poolSize) {
-                        // there are no stopped stream, so we try to create a new one
-                        WowzaLiveStream stream = new WowzaLiveStream();
-                        OnComplete<WowzaLiveStream> newStreamCreated = (WowzaLiveStream v) -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + v.getName() + " and id " + v.getId() + ", because there are no stopped streams", Log.DEBUG);
-                            }
-                            onComplete.completed(v.getId());
-                        };
-                        Runnable newStreamCreationFailed = () -> {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.getStreamFromPool -> Failed to create a new live stream", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
-                        };
-                        stream.create(params, newStreamCreated, newStreamCreationFailed);
-                    } else {
-                        // we recursively run the WowzaLiveStream.fetchState for the next stream
-                        if (stateOfStream[0] != null) {
-                            stateOfStream[0].run();
-                        }
-                    }
+                    // we check the next streams
+                    probeStreams[0].run();
                 }, () -> {
                     // server error
+                    inFlight[0] = inFlight[0] - 1;
+                    if (done[0]) {
+                        return;
+                    }
+                    done[0] = true;
+                    pager.close();
                     if (isVerboseLog()) {
-                        Log.p("WowzaLiveStream.getStreamFromPool -> Server error trying to get the state of stream with id " + ids.get(indexId[0]), Log.ERROR);
-                        Log.sendLogAsync();
+                        WowzaLogShipper.log("WowzaLiveStream.getStreamFromPool -> Server error trying to get the state of stream with id " + id, Log.ERROR);
                     }
                     onFail.run();
                 });
-            };
-            if (stateOfStream[0] != null) {
-                stateOfStream[0].run();
             }
-        }, () -> {
-            // failure
+            if (!done[0] && nextIndex[0] >= ids.size()) {
+                if (pager.hasNext()) {
+                    if (!paging[0]) {
+                        // all the known streams are used or being probed
+                        nextPage[0].run();
+                    }
+                } else if (inFlight[0] == 0) {
+                    noStoppedStreams.run();
+                }
+            }
+        };
+
+        nextPage[0] = () -> {
+            paging[0] = true;
+            pager.next((List<WowzaStreamInfo> streams) -> {
+                // success
+                paging[0] = false;
+                if (done[0]) {
+                    return;
+                }
+                if (isVerboseLog()) {
+                    Log.p("WowzaLiveStream.getStreamFromPool -> Received " + streams.size() + " streams, " + pager.getReceivedCount() + " so far", Log.DEBUG);
+                }
+                // the probed ids are not needed anymore
+                ids.clear();
+                nextIndex[0] = 0;
+                // the list can already tell us the state of some streams,
+                // so only the streams with an unknown state need a state request
+                for (WowzaStreamInfo stream : streams) {
+                    if (stream.isStopped()) {
+                        stoppedStreamFound.completed(stream.getId());
+                        return;
+                    } else if (stream.isStateKnown()) {
+                        usedStreams[0] = usedStreams[0] + 1;
+                    } else {
+                        ids.add(stream.getId());
+                    }
+                }
+                probeStreams[0].run();
+            }, () -> {
+                // failure
+                paging[0] = false;
+                if (done[0]) {
+                    return;
+                }
+                done[0] = true;
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaLiveStream.getStreamFromPool -> Failed to get the stream ids", Log.ERROR);
+                }
+                onFail.run();
+            });
+        };
+
+        nextPage[0].run();
+    }
+
+    /**
+     * Creates a new stream when the pool has no stopped streams, passing its
+     * id to the onComplete callback.
+     */
+    private static void createStreamForPool(WowzaLiveStreamParams params, OnComplete<String> onComplete, Runnable onFail) {
+        WowzaLiveStream stream = new WowzaLiveStream();
+        OnComplete<WowzaLiveStream> newStreamCreated = (WowzaLiveStream v) -> {
+            if (isVerboseLog()) {
+                Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + v.getName() + " and id " + v.getId() + ", because there are no stopped streams", Log.DEBUG);
+            }
+            onComplete.completed(v.getId());
+        };
+        Runnable newStreamCreationFailed = () -> {
             if (isVerboseLog()) {
-                Log.p("WowzaLiveStream.getStreamFromPool -> Failed to get all stream ids", Log.ERROR);
-                Log.sendLogAsync();
+                WowzaLogShipper.log("WowzaLiveStream.getStreamFromPool -> Failed to create a new live stream", Log.ERROR);
             }
             onFail.run();
-        });
+        };
+        stream.create(params, newStreamCreated, newStreamCreationFailed);
+    }
+
+    /**
+     * Adds a new stream to the pool (in background) if the poolSize is less
+     * than the startingSize or if the used streams exceed the threshold.
+     */
+    private static void growPoolIfNeeded(WowzaLiveStreamParams params, int poolSize, int startingSize, int usedStreams, int threshold) {
+        WowzaLiveStream stream = new WowzaLiveStream();
+        if (poolSize < startingSize) {
+            stream.create(params, newStream -> {
+                if (isVerboseLog()) {
+                    Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + newStream.getName() + " and id " + newStream.getId() + ", because poolSize < startingSize (" + poolSize + " < " + startingSize + ")", Log.DEBUG);
+                }
+            }, () -> {
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaLiveStream.getStreamFromPool -> Failed to create new stream", Log.ERROR);
+                }
+            });
+        } else if (usedStreams * 100 / poolSize > threshold) {
+            stream.create(params, newStream -> {
+                if (isVerboseLog()) {
+                    Log.p("WowzaLiveStream.getStreamFromPool -> Created new stream with name " + newStream.getName() + " and id " + newStream.getId() + ", because " + (usedStreams * 100 / poolSize) + "% of usedStreams > threshold (" + threshold + "%)", Log.DEBUG);
+                }
+            }, () -> {
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaLiveStream.getStreamFromPool -> Failed to create new stream", Log.ERROR);
+                }
+            });
+        }
     }
 
     /**
@@ -865,6 +1004,10 @@ public class WowzaLiveStream {
      * After a default timeout of 120 seconds, if the starting is not completed
      * then the onFail callback is called. You can customize the timeout.</p>
      *
+     * <p>
+     * The state is polled with an adaptive interval, see
+     * {@link WowzaStartPoller}.</p>
+     *
      * @param id of the stream
      * @param isStarted is a callback called when the starting is completed
      * @param onFail is a callback for failure
@@ -872,6 +1015,23 @@ public class WowzaLiveStream {
      * value &gt;= 30 to set a custom timeout.
      */
     public static void start(String id, OnComplete<String> isStarted, Runnable onFail, Integer timeout) {
+        startWithPoller(id, isStarted, onFail, timeout);
+    }
+
+    /**
+     * (Async) Like
+     * {@link #start(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable, java.lang.Integer)},
+     * but it returns the poller of the stream state.
+     *
+     * @param id of the stream
+     * @param isStarted is a callback called when the starting is completed
+     * @param onFail is a callback for failure
+     * @param timeout (seconds) null to use the default timeout, or any other
+     * value &gt;= 30 to set a custom timeout.
+     * @return the poller of the stream state, that can be used to cancel the
+     * polling or to get its metrics
+     */
+    public static WowzaStartPoller startWithPoller(String id, OnComplete<String> isStarted, Runnable onFail, Integer timeout) {
         if (id == null) {
             throw new IllegalStateException("WowzaLiveStreaming.start -> id of the stream cannot be null");
         }
@@ -879,96 +1039,99 @@ public class WowzaLiveStream {
             throw new IllegalStateException("WowzaLiveStreaming.start -> timeout must be >= 30 or null to use the default timeout");
         }
 
+        WowzaStartPoller poller = new WowzaStartPoller(id);
+        requestStart(id, (String state) -> {
+            int maxTime;
+            if (timeout != null) {
+                maxTime = timeout * 1000;
+            } else {
+                maxTime = 120 * 1000;
+            }
+            poller.poll(maxTime, isStarted, onFail);
+        }, onFail);
+        return poller;
+    }
+
+    /**
+     * Sends the start request of a stream, invoking isStarting if the stream
+     * is in the "starting" state.
+     */
+    static void requestStart(String id, OnComplete<String> isStarting, Runnable onFail) {
+        StreamStateCache.invalidate(id);
         putRequest("live_streams/" + id + "/start")
                 .onErrorCodeString(new ErrorCodeHandler<String>() {
                     @Override
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.start -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.start -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.start -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.start -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String state = (String) response.get("state");
-                        if ("starting".equals(state)) {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.start -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
-                            }
-                            int maxTime;
-                            if (timeout != null) {
-                                maxTime = timeout * 1000;
-                            } else {
-                                maxTime = 120 * 1000;
-                            }
-                            long startingTime = System.currentTimeMillis();
-                            Runnable[] checking = {null};
-                            checking[0] = () -> {
-                                // check the timeout
-                                if (System.currentTimeMillis() - startingTime > maxTime) {
-                                    if (isVerboseLog()) {
-                                        Log.p("WowzaLiveStream.start -> Timeout reached while starting the stream with id " + id, Log.ERROR);
-                                        Log.sendLogAsync();
-                                    }
-                                    onFail.run();
-                                } else {
-                                    fetchState(id, myId -> {
-                                        // the stream is started
-                                        if (isVerboseLog()) {
-                                            Log.p("WowzaLiveStream.start -> Successfully started the stream with id " + id + " after " + ((System.currentTimeMillis() - startingTime) / 1000) + " seconds", Log.DEBUG);
-                                        }
-                                        isStarted.completed(id);
-                                    }, myId -> {
-                                        // the stream is starting
-                                        TimerTask task = new TimerTask() {
-                                            @Override
-                                            public void run() {
-                                                if (checking[0] != null) {
-                                                    checking[0].run();
-                                                }
-                                            }
-                                        };
-                                        Timer timer = new Timer();
-                                        timer.schedule(task, 2000);
-                                    }, myId -> {
-                                        // other state
-                                        if (isVerboseLog()) {
-                                            Log.p("WowzaLiveStream.start -> Invalid state after starting the stream with id " + id, Log.ERROR);
-                                            Log.sendLogAsync();
-                                        }
-                                        onFail.run();
-                                    }, onFail);
-                                }
-                            };
-                            if (checking[0] != null) {
-                                checking[0].run();
-                            }
-                        } else {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.start -> The state " + state + " for the stream with id " + id + " is not \"starting\", so the starting request is failed", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
+                .fetchDecoded(new WowzaJsonDecoder.LiveStream(), (WowzaStreamInfo response) -> {
+                    String state = response != null ? response.getState() : null;
+                    StreamStateCache.put(id, state);
+                    if ("starting".equals(state)) {
+                        if (isVerboseLog()) {
+                            Log.p("WowzaLiveStream.start -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
                         }
-
+                        isStarting.completed(state);
+                    } else {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("WowzaLiveStream.start -> The state " + state + " for the stream with id " + id + " is not \"starting\", so the starting request is failed", Log.ERROR);
+                        }
+                        onFail.run();
                     }
                 });
     }
 
+    /**
+     * <p>
+     * (Async) Starts many streams, with at most maxConcurrency start requests
+     * in flight at the same time, and waits that all of them are started (or
+     * failed) before calling the onComplete callback.</p>
+     * <p>
+     * The streams in the "starting" state are checked by a single polling
+     * loop shared by all the streams of the batch. Failures don't stop the
+     * batch: they are reported in the result.</p>
+     *
+     * @param ids of the streams
+     * @param maxConcurrency max number of start requests in flight, it must be
+     * &gt;= 1
+     * @param timeout (seconds) of the starting of every stream, null to use the
+     * default timeout (120 seconds), or any other value &gt;= 30
+     * @param onComplete callback invoked with the outcome of every stream
+     */
+    public static void startAll(Collection<String> ids, int maxConcurrency, Integer timeout, OnComplete<WowzaBatchResult> onComplete) {
+        if (timeout != null && timeout < 30) {
+            throw new IllegalStateException("WowzaLiveStreaming.startAll -> timeout must be >= 30 or null to use the default timeout");
+        }
+        int maxTime = (timeout != null ? timeout : 120) * 1000;
+        new WowzaLifecycleBatch(true, ids, maxConcurrency, maxTime, onComplete).run();
+    }
+
+    /**
+     * (Async) Stops many streams, with at most maxConcurrency stop requests in
+     * flight at the same time, calling the onComplete callback when all of
+     * them are stopped (or failed). Failures don't stop the batch: they are
+     * reported in the result.
+     *
+     * @param ids of the streams
+     * @param maxConcurrency max number of stop requests in flight, it must be
+     * &gt;= 1
+     * @param onComplete callback invoked with the outcome of every stream
+     */
+    public static void stopAll(Collection<String> ids, int maxConcurrency, OnComplete<WowzaBatchResult> onComplete) {
+        new WowzaLifecycleBatch(false, ids, maxConcurrency, 0, onComplete).run();
+    }
+
     /**
      * <p>
      * (Async) Stops a stream.</p>
@@ -982,48 +1145,130 @@ public class WowzaLiveStream {
             throw new IllegalStateException("WowzaLiveStreaming.stop -> id of the stream cannot be null");
         }
 
+        StreamStateCache.invalidate(id);
         putRequest("live_streams/" + id + "/stop")
                 .onErrorCodeString(new ErrorCodeHandler<String>() {
                     @Override
                     public void onError(Response<String> v) {
                         if (v.getResponseCode() == 401) {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.stop -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.stop -> (Code 401) Unauthorized, failed to get the state of stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         } else {
                             if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.stop -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
-                                Log.sendLogAsync();
+                                WowzaLogShipper.log("WowzaLiveStream.stop -> Unknow response with code " + v.getResponseCode() + ", failed to get the state of the stream " + id + ", string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
                             }
                             onFail.run();
                         }
                     }
                 })
-                .fetchAsJsonMap(new OnComplete<Response<Map>>() {
-                    @Override
-                    public void completed(Response<Map> v) {
-                        // success
-                        Map responseData = v.getResponseData();
-                        Map response = (Map) responseData.get("live_stream");
-                        String state = (String) response.get("state");
-                        if ("stopped".equals(state)) {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.stop -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
-                            }
-                            isStopped.completed(id);
-                        } else {
-                            if (isVerboseLog()) {
-                                Log.p("WowzaLiveStream.start -> The state " + state + " for the stream with id " + id + " is not \"stopped\", so the stopping request is failed", Log.ERROR);
-                                Log.sendLogAsync();
-                            }
-                            onFail.run();
+                .fetchDecoded(new WowzaJsonDecoder.LiveStream(), (WowzaStreamInfo response) -> {
+                    String state = response != null ? response.getState() : null;
+                    StreamStateCache.put(id, state);
+                    if ("stopped".equals(state)) {
+                        if (isVerboseLog()) {
+                            Log.p("WowzaLiveStream.stop -> (Code 200) Successfully get the state " + state + " for the stream with id " + id, Log.DEBUG);
+                        }
+                        isStopped.completed(id);
+                    } else {
+                        if (isVerboseLog()) {
+                            WowzaLogShipper.log("WowzaLiveStream.start -> The state " + state + " for the stream with id " + id + " is not \"stopped\", so the stopping request is failed", Log.ERROR);
                         }
+                        onFail.run();
                     }
                 });
     }
 
+    /**
+     * (Async) Creates a new live stream, see
+     * {@link #create(net.informaticalibera.cn1libs.wowza.WowzaLiveStreamParams, com.codename1.util.OnComplete, java.lang.Runnable)}
+     *
+     * @param params of the new stream
+     * @return a promise of this stream, created
+     */
+    public WowzaPromise<WowzaLiveStream> createAsync(WowzaLiveStreamParams params) {
+        return WowzaPromise.from((OnComplete<WowzaLiveStream> onComplete, Runnable onFail) -> {
+            create(params, onComplete, onFail);
+        });
+    }
+
+    /**
+     * (Async) Fetches the state of the given stream, see
+     * {@link #fetchState(java.lang.String, com.codename1.util.OnComplete, com.codename1.util.OnComplete, java.lang.Runnable)}
+     *
+     * @param id of the stream
+     * @return a promise of the state, like "started", "stopped", "starting",
+     * "stopping" or "resetting"
+     */
+    public static WowzaPromise<String> fetchStateAsync(String id) {
+        if (id == null) {
+            throw new IllegalStateException("WowzaLiveStreaming.fetchStateAsync -> id of the stream cannot be null");
+        }
+        return WowzaPromise.from((OnComplete<String> onComplete, Runnable onFail) -> {
+            StreamStateCache.fetchState(id, onComplete, onFail);
+        });
+    }
+
+    /**
+     * (Async) Fetches the thumbnail url of the given stream, see
+     * {@link #fetchThumbnail(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable, java.lang.Runnable)}
+     *
+     * @param id of the stream
+     * @return a promise of the thumbnail url, that is null if there is no
+     * stream data
+     */
+    public static WowzaPromise<String> fetchThumbnailAsync(String id) {
+        return WowzaPromise.from((OnComplete<String> onComplete, Runnable onFail) -> {
+            fetchThumbnail(id, onComplete, () -> {
+                onComplete.completed(null);
+            }, onFail);
+        });
+    }
+
+    /**
+     * (Async) Gets a stopped stream from your pool, see
+     * {@link #getStreamFromPool(int, int, net.informaticalibera.cn1libs.wowza.WowzaLiveStreamParams, com.codename1.util.OnComplete, java.lang.Runnable)}
+     *
+     * @param startingSize of your pool
+     * @param threshold is a percentage of active streams
+     * @param defaultParams of the new streams, it can be null
+     * @return a promise of the id of a stopped stream
+     */
+    public static WowzaPromise<String> getStreamFromPoolAsync(int startingSize, int threshold, WowzaLiveStreamParams defaultParams) {
+        return WowzaPromise.from((OnComplete<String> onComplete, Runnable onFail) -> {
+            getStreamFromPool(startingSize, threshold, defaultParams, onComplete, onFail);
+        });
+    }
+
+    /**
+     * (Async) Starts a stream, see
+     * {@link #start(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable, java.lang.Integer)}
+     *
+     * @param id of the stream
+     * @param timeout (seconds) null to use the default timeout, or any other
+     * value &gt;= 30
+     * @return a promise of the id of the started stream
+     */
+    public static WowzaPromise<String> startAsync(String id, Integer timeout) {
+        return WowzaPromise.from((OnComplete<String> onComplete, Runnable onFail) -> {
+            start(id, onComplete, onFail, timeout);
+        });
+    }
+
+    /**
+     * (Async) Stops a stream, see
+     * {@link #stop(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable)}
+     *
+     * @param id of the stream
+     * @return a promise of the id of the stopped stream
+     */
+    public static WowzaPromise<String> stopAsync(String id) {
+        return WowzaPromise.from((OnComplete<String> onComplete, Runnable onFail) -> {
+            stop(id, onComplete, onFail);
+        });
+    }
+
     /**
      * Enables or disables the hmac authentication; by default it's disabled.
      *
@@ -1033,4 +1278,47 @@ public class WowzaLiveStream {
         WowzaLiveStream.hmacAuthentication = hmacAuthentication;
     }
 
+    static boolean isHmacAuthentication() {
+        return hmacAuthentication;
+    }
+
+    /**
+     * Sets the endpoint of the Wowza Streaming Cloud REST API, for example to
+     * use a mock server for testing. By default the endpoint is
+     * "https://api.cloud.wowza.com" with the api version "/api/v1.3/".
+     *
+     * @param url base url, without the trailing slash, or null to use the
+     * default one
+     * @param apiVersion path of the api version, starting and ending with a
+     * slash, or null to use the default one
+     */
+    public static void setEndpoint(String url, String apiVersion) {
+        if (url != null && (url.isEmpty() || url.endsWith("/"))) {
+            throw new IllegalArgumentException("WowzaLiveStream.setEndpoint -> url cannot be empty or end with a slash");
+        }
+        if (apiVersion != null && (!apiVersion.startsWith("/") || !apiVersion.endsWith("/"))) {
+            throw new IllegalArgumentException("WowzaLiveStream.setEndpoint -> apiVersion must start and end with a slash");
+        }
+        WowzaLiveStream.url = url != null ? url : DEFAULT_URL;
+        WowzaLiveStream.apiVersion = apiVersion != null ? apiVersion : DEFAULT_API_VERSION;
+    }
+
+    /**
+     * Base url of the Wowza Streaming Cloud REST API
+     *
+     * @return url
+     */
+    public static String getUrl() {
+        return url;
+    }
+
+    /**
+     * Api version of the Wowza Streaming Cloud REST API
+     *
+     * @return api version
+     */
+    public static String getApiVersion() {
+        return apiVersion;
+    }
+
 }
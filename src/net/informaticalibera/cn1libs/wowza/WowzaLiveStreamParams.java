@@ -65,4 +65,23 @@ public class WowzaLiveStreamParams implements PropertyBusinessObject {
         }
     }
 
+    /**
+     * A copy of these parameters, so that the copy can be changed without
+     * affecting the shared instance.
+     *
+     * @return a new instance with the same values
+     */
+    WowzaLiveStreamParams copy() {
+        WowzaLiveStreamParams copy = new WowzaLiveStreamParams();
+        copy.aspect_ratio_height.set(aspect_ratio_height.get());
+        copy.aspect_ratio_width.set(aspect_ratio_width.get());
+        copy.broadcast_location.set(broadcast_location.get());
+        copy.encoder.set(encoder.get());
+        copy.name.set(name.get());
+        copy.transcoder_type.set(transcoder_type.get());
+        copy.disable_authentication.set(disable_authentication.get());
+        copy.recording.set(recording.get());
+        return copy;
+    }
+
 }
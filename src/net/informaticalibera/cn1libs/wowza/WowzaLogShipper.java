@@ -0,0 +1,360 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.io.NetworkManager;
+import com.codename1.ui.CN;
+import java.util.ArrayList;
+import java.util.List;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Batched shipping of the log: the errors of this CN1Lib are collected, and
+ * the log is sent with Log.sendLogAsync() at most once per batch, instead of
+ * once per error.</p>
+ * <p>
+ * The last events are kept in a bounded ring buffer. An event identical to a
+ * recent one is not written again in the log: it's counted, and the number
+ * of repeats is written before the next upload. A batch is sent when
+ * {@link #setBatchSize(int)} new events are collected, or
+ * {@link #setFlushDelay(long)} after the first one, but never twice within
+ * {@link #setMinUploadInterval(long)} (or
+ * {@link #setMeteredUploadInterval(long)} on a metered mobile network). When
+ * the Wowza server cannot be reached the device is considered offline, and
+ * the upload is postponed until a request succeeds again.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaLogShipper {
+
+    private static int capacity = 100;
+    private static int batchSize = 20;
+    private static long flushDelay = 30000;
+    private static long minUploadInterval = 60000;
+    private static long meteredUploadInterval = 300000;
+    private static long dedupWindow = 60000;
+
+    private static Event[] events = new Event[capacity];
+    private static int head = 0;
+    private static int size = 0;
+    private static int pending = 0;
+    // repeat counts of the events evicted from the buffer before the upload
+    private static final List<String> evictedRepeats = new ArrayList<>();
+    private static long lastUpload = 0;
+    private static boolean online = true;
+    private static WowzaScheduler.Task uploadTask = null;
+
+    /**
+     * An error written in the log.
+     */
+    private static class Event {
+
+        private final String message;
+        private final int level;
+        private final long time;
+        private long lastTime;
+        private int repeats = 0;
+        private int unloggedRepeats = 0;
+
+        private Event(String message, int level, long time) {
+            this.message = message;
+            this.level = level;
+            this.time = time;
+            this.lastTime = time;
+        }
+    }
+
+    private WowzaLogShipper() {
+    }
+
+    /**
+     * Writes an event in the log (unless it's a repeat of a recent one) and
+     * schedules the upload of the log.
+     *
+     * @param message of the event
+     * @param level like Log.ERROR
+     */
+    public static void log(String message, int level) {
+        boolean write;
+        synchronized (WowzaLogShipper.class) {
+            long now = System.currentTimeMillis();
+            Event event = find(message, now);
+            write = event == null;
+            if (write) {
+                add(new Event(message, level, now));
+                pending++;
+            } else {
+                event.repeats++;
+                event.unloggedRepeats++;
+                event.lastTime = now;
+                if (event.unloggedRepeats == 1) {
+                    pending++; // the number of repeats must be uploaded too
+                }
+            }
+            scheduleUpload();
+        }
+        if (write) {
+            Log.p(message, level);
+        }
+    }
+
+    /**
+     * Schedules the upload of the log, for events already written in it (for
+     * example by native code).
+     */
+    public static synchronized void requestUpload() {
+        pending++;
+        scheduleUpload();
+    }
+
+    /**
+     * Uploads the log as soon as possible, ignoring the batch rules, if there
+     * are events not uploaded yet.
+     */
+    public static synchronized void flush() {
+        if (pending > 0) {
+            cancelUploadTask();
+            upload();
+        }
+    }
+
+    /**
+     * Sets the number of new events that triggers an upload (default 20).
+     *
+     * @param batchSize number of events, &gt;= 1
+     */
+    public static synchronized void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("WowzaLogShipper.setBatchSize -> batchSize must be >= 1");
+        }
+        WowzaLogShipper.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the max time between an event and the upload of the log (default
+     * 30 seconds), if the min upload interval allows it.
+     *
+     * @param flushDelay in milliseconds
+     */
+    public static synchronized void setFlushDelay(long flushDelay) {
+        WowzaLogShipper.flushDelay = flushDelay;
+    }
+
+    /**
+     * Sets the min time between two uploads (default 60 seconds).
+     *
+     * @param minUploadInterval in milliseconds
+     */
+    public static synchronized void setMinUploadInterval(long minUploadInterval) {
+        WowzaLogShipper.minUploadInterval = minUploadInterval;
+    }
+
+    /**
+     * Sets the min time between two uploads on a metered mobile network
+     * (default 5 minutes).
+     *
+     * @param meteredUploadInterval in milliseconds
+     */
+    public static synchronized void setMeteredUploadInterval(long meteredUploadInterval) {
+        WowzaLogShipper.meteredUploadInterval = meteredUploadInterval;
+    }
+
+    /**
+     * Sets the time within which an identical event is considered a repeat
+     * (default 60 seconds).
+     *
+     * @param dedupWindow in milliseconds
+     */
+    public static synchronized void setDedupWindow(long dedupWindow) {
+        WowzaLogShipper.dedupWindow = dedupWindow;
+    }
+
+    /**
+     * Sets the number of events kept in memory (default 100).
+     *
+     * @param capacity number of events, &gt;= 1
+     */
+    public static synchronized void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("WowzaLogShipper.setCapacity -> capacity must be >= 1");
+        }
+        List<Event> kept = getEvents();
+        WowzaLogShipper.capacity = capacity;
+        events = new Event[capacity];
+        head = 0;
+        size = 0;
+        for (Event event : kept) {
+            add(event);
+        }
+    }
+
+    /**
+     * The last events, from the oldest, like "1571234567890 [4] message (x3)"
+     * where 4 is the level and 3 the number of occurrences.
+     *
+     * @return a copy of the events
+     */
+    public static synchronized List<String> getRecentEvents() {
+        List<String> list = new ArrayList<>(size);
+        for (Event event : getEvents()) {
+            list.add(event.time + " [" + event.level + "] " + event.message + (event.repeats > 0 ? " (x" + (event.repeats + 1) + ")" : ""));
+        }
+        return list;
+    }
+
+    /**
+     * Number of events not uploaded yet
+     *
+     * @return count
+     */
+    public static synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Receives the result of a request to the Wowza server, to know if the
+     * device is online.
+     *
+     * @param reachable false if the server could not be reached
+     */
+    static void networkStatus(boolean reachable) {
+        synchronized (WowzaLogShipper.class) {
+            if (online == reachable) {
+                return;
+            }
+            online = reachable;
+            if (online) {
+                scheduleUpload();
+            } else {
+                cancelUploadTask();
+            }
+        }
+        if (isVerboseLog()) {
+            Log.p("WowzaLogShipper -> The device is " + (reachable ? "online" : "offline") + ", log uploads are " + (reachable ? "resumed" : "postponed"), Log.DEBUG);
+        }
+    }
+
+    private static Event find(String message, long now) {
+        for (int i = 0; i < size; i++) {
+            Event event = events[(head - 1 - i + capacity) % capacity];
+            if (now - event.lastTime > dedupWindow) {
+                continue;
+            }
+            if (event.message.equals(message)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private static void add(Event event) {
+        Event evicted = size == capacity ? events[head] : null;
+        if (evicted != null && evicted.unloggedRepeats > 0) {
+            // the count is still pending, it will be written at the upload
+            evictedRepeats.add(getRepeatsMessage(evicted));
+        }
+        events[head] = event;
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    private static List<Event> getEvents() {
+        List<Event> list = new ArrayList<>(size);
+        for (int i = size; i > 0; i--) {
+            list.add(events[(head - i + capacity) % capacity]);
+        }
+        return list;
+    }
+
+    /**
+     * Schedules the upload of the pending events according to the batch
+     * rules.
+     */
+    private static void scheduleUpload() {
+        if (pending == 0 || !online) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long earliest = lastUpload + (isMetered() ? meteredUploadInterval : minUploadInterval);
+        long time = Math.max(earliest, pending >= batchSize ? now : now + flushDelay);
+        if (uploadTask != null) {
+            if (pending < batchSize) {
+                return; // the first event of the batch already scheduled it
+            }
+            cancelUploadTask();
+        }
+        uploadTask = WowzaScheduler.schedule("WowzaLogShipper.upload", () -> {
+            synchronized (WowzaLogShipper.class) {
+                uploadTask = null;
+                if (online && pending > 0) {
+                    upload();
+                }
+            }
+        }, Math.max(0, time - now));
+    }
+
+    private static void cancelUploadTask() {
+        if (uploadTask != null) {
+            uploadTask.cancel();
+            uploadTask = null;
+        }
+    }
+
+    private static String getRepeatsMessage(Event event) {
+        return "WowzaLogShipper -> The previous message was repeated " + event.unloggedRepeats + " more times: " + event.message;
+    }
+
+    private static void upload() {
+        List<String> repeats = new ArrayList<>(evictedRepeats);
+        evictedRepeats.clear();
+        for (Event event : getEvents()) {
+            if (event.unloggedRepeats > 0) {
+                repeats.add(getRepeatsMessage(event));
+                event.unloggedRepeats = 0;
+            }
+        }
+        pending = 0;
+        lastUpload = System.currentTimeMillis();
+        CN.callSerially(() -> {
+            for (String repeat : repeats) {
+                Log.p(repeat, Log.WARNING);
+            }
+            Log.sendLogAsync();
+        });
+    }
+
+    /**
+     * Returns true if the current access point is a mobile network.
+     */
+    private static boolean isMetered() {
+        try {
+            NetworkManager manager = NetworkManager.getInstance();
+            if (!manager.isAPSupported()) {
+                return false;
+            }
+            String accessPoint = manager.getCurrentAccessPoint();
+            if (accessPoint == null) {
+                return false;
+            }
+            int type = manager.getAPType(accessPoint);
+            return type == NetworkManager.ACCESS_POINT_TYPE_NETWORK2G || type == NetworkManager.ACCESS_POINT_TYPE_NETWORK3G;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.io.Storage;
+import com.codename1.io.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * On-device cache, kept in the Codename One Storage, of the data that rarely
+ * changes: the transcoder configs returned by
+ * {@link GoCoderBroadcastConfig#getInstance(String, com.codename1.util.OnComplete, Runnable)}
+ * and the list of the stream ids returned by
+ * {@link WowzaLiveStream#fetchAllLiveStreamsCached(com.codename1.util.OnComplete, Runnable)}.
+ * So, after an app restart, these methods don't need to wait for a REST
+ * call. WowzaLiveStream.fetchAllLiveStreams is not affected: it always
+ * asks the server, and updates the cached list.</p>
+ * <p>
+ * A cached value is returned immediately; if it's older than its ttl, it's
+ * also revalidated in background, so the next call gets the updated
+ * value.</p>
+ * <p>
+ * A cached transcoder config contains the source username and password: when
+ * a broadcast started with it fails to connect or to authenticate (as
+ * reported by the native GoCoder code), it's removed with
+ * {@link #invalidateTranscoder(String)}, so the next request asks the
+ * server.</p>
+ * <p>
+ * The data is saved in a compact and versioned binary format: files written
+ * with a different format version are ignored. The passwords of the
+ * transcoders are saved xor encoded.</p>
+ * <p>
+ * The names of the Storage entries contain a hash of the access key and of
+ * the endpoint url, so the data cached for an account (or for a test
+ * endpoint) is never returned for another one.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaPersistentCache {
+
+    /**
+     * Version of the binary format, to be incremented at every change of it.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String TRANSCODER_PREFIX = "WowzaPersistentCache.transcoder.";
+    private static final String STREAM_IDS = "WowzaPersistentCache.live_streams";
+
+    private static boolean enabled = true;
+    private static long transcoderTtl = 24 * 60 * 60 * 1000;
+    private static long streamIdsTtl = 5 * 60 * 1000;
+
+    // copies in memory of the values already read from the Storage
+    private static final Map<String, Entry<GoCoderBroadcastConfig>> transcoders = new HashMap<>();
+    private static Entry<List<String>> streamIds = null;
+    private static boolean streamIdsLoaded = false;
+
+    // access key and endpoint of the copies in memory
+    private static String scope = null;
+
+    /**
+     * A cached value with the time when it was received from the server.
+     */
+    static class Entry<T> {
+
+        final T value;
+        final long savedAt;
+
+        private Entry(T value, long savedAt) {
+            this.value = value;
+            this.savedAt = savedAt;
+        }
+
+        private boolean isOlderThan(long ttl) {
+            return System.currentTimeMillis() - savedAt > ttl;
+        }
+    }
+
+    /**
+     * Enables or disables the cache (it's enabled by default). Disabling it
+     * also deletes the cached data.
+     *
+     * @param enabled true to use the cache
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        WowzaPersistentCache.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Checks if the cache is enabled.
+     *
+     * @return true if enabled
+     */
+    public static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Time after which a cached transcoder config is revalidated (default 24
+     * hours).
+     *
+     * @param ttl in milliseconds
+     */
+    public static synchronized void setTranscoderTtl(long ttl) {
+        transcoderTtl = ttl;
+    }
+
+    /**
+     * Time after which the cached list of stream ids is revalidated (default 5
+     * minutes).
+     *
+     * @param ttl in milliseconds
+     */
+    public static synchronized void setStreamIdsTtl(long ttl) {
+        streamIdsTtl = ttl;
+    }
+
+    /**
+     * Deletes all the cached data, in memory and in the Storage.
+     */
+    public static synchronized void clear() {
+        Storage storage = Storage.getInstance();
+        for (String name : storage.listEntries()) {
+            // every scope, and the entries written before the scoping
+            if (name.startsWith(TRANSCODER_PREFIX) || name.startsWith(STREAM_IDS)) {
+                storage.deleteStorageFile(name);
+            }
+        }
+        transcoders.clear();
+        streamIds = null;
+        streamIdsLoaded = true;
+        scope = getScope();
+    }
+
+    /**
+     * Hash of the current access key and endpoint url, used in the names of
+     * the Storage entries. When it changes, the copies in memory are
+     * discarded.
+     *
+     * @return scope
+     */
+    private static String getScope() {
+        String current = Integer.toHexString((WowzaAccount.getAccessKey() + "|" + WowzaLiveStream.getUrl()).hashCode());
+        if (!current.equals(scope)) {
+            transcoders.clear();
+            streamIds = null;
+            streamIdsLoaded = false;
+            scope = current;
+        }
+        return current;
+    }
+
+    private static String getTranscoderName(String id) {
+        return TRANSCODER_PREFIX + getScope() + "." + id;
+    }
+
+    private static String getStreamIdsName() {
+        return STREAM_IDS + "." + getScope();
+    }
+
+    /**
+     * Deletes the cached transcoder config of the given stream.
+     *
+     * @param id of the stream
+     */
+    public static synchronized void invalidateTranscoder(String id) {
+        String name = getTranscoderName(id);
+        transcoders.remove(id);
+        Storage.getInstance().deleteStorageFile(name);
+    }
+
+    /**
+     * The cached transcoder config of the given stream.
+     *
+     * @return the cached config, or null if not available
+     */
+    static synchronized Entry<GoCoderBroadcastConfig> getTranscoder(String id) {
+        if (!enabled) {
+            return null;
+        }
+        String name = getTranscoderName(id);
+        if (!transcoders.containsKey(id)) {
+            transcoders.put(id, readTranscoder(name, id));
+        }
+        return transcoders.get(id);
+    }
+
+    static synchronized boolean isStale(Entry<GoCoderBroadcastConfig> entry) {
+        return entry.isOlderThan(transcoderTtl);
+    }
+
+    static synchronized void putTranscoder(GoCoderBroadcastConfig config) {
+        if (!enabled) {
+            return;
+        }
+        String name = getTranscoderName(config.getId());
+        Entry<GoCoderBroadcastConfig> entry = new Entry<>(config, System.currentTimeMillis());
+        transcoders.put(config.getId(), entry);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(Storage.getInstance().createOutputStream(name));
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(entry.savedAt);
+            out.writeUTF(config.getHostAddress());
+            out.writeInt(config.getPortNumber());
+            out.writeUTF(config.getApplicationName());
+            out.writeUTF(config.getStreamName());
+            writeNullableUTF(out, config.getUsername());
+            writeNullableUTF(out, config.getPassword() != null ? Util.xorEncode(config.getPassword()) : null);
+        } catch (IOException ex) {
+            Log.e(ex);
+        } finally {
+            Util.cleanup(out);
+        }
+    }
+
+    private static Entry<GoCoderBroadcastConfig> readTranscoder(String name, String id) {
+        if (!Storage.getInstance().exists(name)) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(Storage.getInstance().createInputStream(name));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long savedAt = in.readLong();
+            String hostAddress = in.readUTF();
+            int portNumber = in.readInt();
+            String applicationName = in.readUTF();
+            String streamName = in.readUTF();
+            String username = readNullableUTF(in);
+            String password = readNullableUTF(in);
+            GoCoderBroadcastConfig config = new GoCoderBroadcastConfig(id, hostAddress, portNumber, applicationName, streamName, username, password != null ? Util.xorDecode(password) : null);
+            return new Entry<>(config, savedAt);
+        } catch (IOException ex) {
+            Log.e(ex);
+            return null;
+        } finally {
+            Util.cleanup(in);
+        }
+    }
+
+    /**
+     * The cached list of stream ids.
+     *
+     * @return the cached list, or null if not available
+     */
+    static synchronized Entry<List<String>> getStreamIds() {
+        if (!enabled) {
+            return null;
+        }
+        String name = getStreamIdsName();
+        if (!streamIdsLoaded) {
+            streamIds = readStreamIds(name);
+            streamIdsLoaded = true;
+        }
+        return streamIds;
+    }
+
+    static synchronized boolean isStreamIdsStale(Entry<List<String>> entry) {
+        return entry.isOlderThan(streamIdsTtl);
+    }
+
+    /**
+     * Replaces the cached list. If the list didn't change, only the copy in
+     * memory is renewed and the Storage is not written: after a restart the
+     * list is revalidated once more.
+     */
+    static synchronized void putStreamIds(List<String> ids) {
+        if (!enabled) {
+            return;
+        }
+        Entry<List<String>> entry = getStreamIds();
+        if (entry != null && entry.value.equals(ids)) {
+            streamIds = new Entry<>(entry.value, System.currentTimeMillis());
+            return;
+        }
+        writeStreamIds(new Entry<>(new ArrayList<>(ids), System.currentTimeMillis()));
+    }
+
+    /**
+     * Adds a new stream to the cached list, if any, without changing its age.
+     */
+    static synchronized void addStreamId(String id) {
+        Entry<List<String>> entry = getStreamIds();
+        if (entry != null && !entry.value.contains(id)) {
+            List<String> ids = new ArrayList<>(entry.value);
+            ids.add(id);
+            writeStreamIds(new Entry<>(ids, entry.savedAt));
+        }
+    }
+
+    private static void writeStreamIds(Entry<List<String>> entry) {
+        String name = getStreamIdsName();
+        streamIds = entry;
+        streamIdsLoaded = true;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(Storage.getInstance().createOutputStream(name));
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(entry.savedAt);
+            out.writeInt(entry.value.size());
+            for (String id : entry.value) {
+                out.writeUTF(id);
+            }
+        } catch (IOException ex) {
+            Log.e(ex);
+        } finally {
+            Util.cleanup(out);
+        }
+    }
+
+    private static Entry<List<String>> readStreamIds(String name) {
+        if (!Storage.getInstance().exists(name)) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(Storage.getInstance().createInputStream(name));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long savedAt = in.readLong();
+            int size = in.readInt();
+            List<String> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(in.readUTF());
+            }
+            return new Entry<>(ids, savedAt);
+        } catch (IOException ex) {
+            Log.e(ex);
+            return null;
+        } finally {
+            Util.cleanup(in);
+        }
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
@@ -0,0 +1,485 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.ui.CN;
+import com.codename1.util.OnComplete;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Result of an asynchronous operation, that can be composed with other ones
+ * instead of nesting callbacks. For example:</p>
+ * <pre>
+ * WowzaLiveStream.startAsync(id, null)
+ *         .thenCompose(startedId -&gt; WowzaPromise.allOf(
+ *                 GoCoderBroadcastConfig.getInstanceAsync(startedId),
+ *                 WowzaLiveStream.fetchThumbnailAsync(startedId),
+ *                 (config, thumbnail) -&gt; { ... }))
+ *         .orTimeout(180000)
+ *         .onSuccess(result -&gt; { ... })
+ *         .onFailure(err -&gt; { ... });
+ * </pre>
+ * <p>
+ * A promise is completed only once, with a value or with a failure. The
+ * callbacks are always invoked on the EDT, also when they are added after
+ * the completion.</p>
+ * <p>
+ * Every method of this CN1Lib that takes an OnComplete and a Runnable onFail
+ * can be adapted with {@link #from(Operation)}.</p>
+ *
+ * @author Francesco Galgani
+ * @param <T> type of the value
+ */
+public class WowzaPromise<T> {
+
+    private boolean done = false;
+    private T value = null;
+    private Throwable failure = null;
+    private List<OnComplete<? super T>> successCallbacks = new ArrayList<>();
+    private List<OnComplete<Throwable>> failureCallbacks = new ArrayList<>();
+
+    /**
+     * An operation with the callbacks style of this CN1Lib.
+     *
+     * @param <T> type of the value
+     */
+    public interface Operation<T> {
+
+        public void run(OnComplete<T> onComplete, Runnable onFail);
+    }
+
+    /**
+     * Transforms a value into another one.
+     *
+     * @param <T> type of the value
+     * @param <U> type of the result
+     */
+    public interface Transform<T, U> {
+
+        public U apply(T value);
+    }
+
+    /**
+     * Starts another asynchronous operation with a value.
+     *
+     * @param <T> type of the value
+     * @param <U> type of the value of the next promise
+     */
+    public interface Step<T, U> {
+
+        public WowzaPromise<U> apply(T value);
+    }
+
+    /**
+     * Combines the values of two promises.
+     *
+     * @param <A> type of the first value
+     * @param <B> type of the second value
+     * @param <R> type of the result
+     */
+    public interface Combine<A, B, R> {
+
+        public R apply(A first, B second);
+    }
+
+    /**
+     * Combines the values of three promises.
+     *
+     * @param <A> type of the first value
+     * @param <B> type of the second value
+     * @param <C> type of the third value
+     * @param <R> type of the result
+     */
+    public interface Combine3<A, B, C, R> {
+
+        public R apply(A first, B second, C third);
+    }
+
+    /**
+     * Creates a promise to be completed with
+     * {@link #complete(java.lang.Object)} or {@link #fail(java.lang.Throwable)}.
+     */
+    public WowzaPromise() {
+    }
+
+    /**
+     * Runs the given operation, adapting its callbacks to a promise.
+     *
+     * @param <T> type of the value
+     * @param operation to be run
+     * @return a promise of the result of the operation
+     */
+    public static <T> WowzaPromise<T> from(Operation<T> operation) {
+        WowzaPromise<T> promise = new WowzaPromise<>();
+        operation.run((T v) -> {
+            promise.complete(v);
+        }, () -> {
+            promise.fail(new RuntimeException("WowzaPromise -> the operation failed"));
+        });
+        return promise;
+    }
+
+    /**
+     * Creates a promise already completed with the given value.
+     *
+     * @param <T> type of the value
+     * @param value of the promise
+     * @return the completed promise
+     */
+    public static <T> WowzaPromise<T> completed(T value) {
+        WowzaPromise<T> promise = new WowzaPromise<>();
+        promise.complete(value);
+        return promise;
+    }
+
+    /**
+     * Completes this promise with the given value, if it's not already done.
+     *
+     * @param value of the promise
+     * @return true if this call completed the promise
+     */
+    public boolean complete(T value) {
+        List<OnComplete<? super T>> callbacks;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.value = value;
+            callbacks = successCallbacks;
+            successCallbacks = null;
+            failureCallbacks = null;
+        }
+        for (OnComplete<? super T> callback : callbacks) {
+            dispatch(callback, value);
+        }
+        return true;
+    }
+
+    /**
+     * Completes this promise with a failure, if it's not already done.
+     *
+     * @param failure cause
+     * @return true if this call completed the promise
+     */
+    public boolean fail(Throwable failure) {
+        List<OnComplete<Throwable>> callbacks;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.failure = failure;
+            callbacks = failureCallbacks;
+            successCallbacks = null;
+            failureCallbacks = null;
+        }
+        for (OnComplete<Throwable> callback : callbacks) {
+            dispatch(callback, failure);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the promise is completed, with a value or a failure
+     *
+     * @return true if done
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns true if the promise is completed with a failure
+     *
+     * @return true if failed
+     */
+    public synchronized boolean isFailed() {
+        return done && failure != null;
+    }
+
+    /**
+     * The value of the promise
+     *
+     * @return the value, or null if the promise is not completed with a value
+     */
+    public synchronized T getValue() {
+        return value;
+    }
+
+    /**
+     * The failure of the promise
+     *
+     * @return the cause, or null if the promise is not failed
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Adds a callback invoked with the value of the promise.
+     *
+     * @param callback to be invoked on success, it can accept a supertype of
+     * the value
+     * @return this promise
+     */
+    public WowzaPromise<T> onSuccess(OnComplete<? super T> callback) {
+        synchronized (this) {
+            if (!done) {
+                successCallbacks.add(callback);
+                return this;
+            }
+            if (failure != null) {
+                return this;
+            }
+        }
+        dispatch(callback, value);
+        return this;
+    }
+
+    /**
+     * Adds a callback invoked with the cause of the failure.
+     *
+     * @param callback to be invoked on failure
+     * @return this promise
+     */
+    public WowzaPromise<T> onFailure(OnComplete<Throwable> callback) {
+        synchronized (this) {
+            if (!done) {
+                failureCallbacks.add(callback);
+                return this;
+            }
+            if (failure == null) {
+                return this;
+            }
+        }
+        dispatch(callback, failure);
+        return this;
+    }
+
+    /**
+     * Adds the callbacks with the style of this CN1Lib.
+     *
+     * @param onComplete callback invoked on success
+     * @param onFail callback invoked on failure
+     */
+    public void then(OnComplete<T> onComplete, Runnable onFail) {
+        onSuccess(onComplete);
+        onFailure((Throwable err) -> {
+            onFail.run();
+        });
+    }
+
+    /**
+     * Transforms the value of this promise.
+     *
+     * @param <U> type of the result
+     * @param transform applied to the value, its exceptions fail the returned
+     * promise
+     * @return a promise of the transformed value
+     */
+    public <U> WowzaPromise<U> thenApply(Transform<T, U> transform) {
+        WowzaPromise<U> next = new WowzaPromise<>();
+        onSuccess((T v) -> {
+            try {
+                next.complete(transform.apply(v));
+            } catch (RuntimeException ex) {
+                next.fail(ex);
+            }
+        });
+        onFailure((Throwable err) -> {
+            next.fail(err);
+        });
+        return next;
+    }
+
+    /**
+     * Starts another asynchronous operation with the value of this promise.
+     *
+     * @param <U> type of the value of the next operation
+     * @param step that starts the next operation
+     * @return a promise of the result of the next operation
+     */
+    public <U> WowzaPromise<U> thenCompose(Step<T, U> step) {
+        WowzaPromise<U> next = new WowzaPromise<>();
+        onSuccess((T v) -> {
+            WowzaPromise<U> stepPromise;
+            try {
+                stepPromise = step.apply(v);
+            } catch (RuntimeException ex) {
+                next.fail(ex);
+                return;
+            }
+            stepPromise.onSuccess((U u) -> {
+                next.complete(u);
+            });
+            stepPromise.onFailure((Throwable err) -> {
+                next.fail(err);
+            });
+        });
+        onFailure((Throwable err) -> {
+            next.fail(err);
+        });
+        return next;
+    }
+
+    /**
+     * Fails this promise if it's not completed within the given time. The
+     * operation behind the promise is not cancelled: its result is ignored.
+     *
+     * @param timeout in milliseconds
+     * @return this promise
+     */
+    public WowzaPromise<T> orTimeout(long timeout) {
+        WowzaScheduler.Task task = WowzaScheduler.schedule("WowzaPromise.timeout", () -> {
+            fail(new RuntimeException("WowzaPromise -> timeout of " + timeout + " ms reached"));
+        }, timeout);
+        onSuccess((T v) -> {
+            task.cancel();
+        });
+        onFailure((Throwable err) -> {
+            task.cancel();
+        });
+        return this;
+    }
+
+    /**
+     * Waits for all the given promises, that run concurrently.
+     *
+     * @param promises to wait for
+     * @return a promise of the values of the given promises, in the same
+     * order; it fails as soon as one of them fails
+     */
+    public static WowzaPromise<List<Object>> allOf(WowzaPromise<?>... promises) {
+        WowzaPromise<List<Object>> all = new WowzaPromise<>();
+        Object[] values = new Object[promises.length];
+        int[] pending = {promises.length};
+        if (promises.length == 0) {
+            all.complete(new ArrayList<>());
+            return all;
+        }
+        for (int i = 0; i < promises.length; i++) {
+            int index = i;
+            OnComplete<Object> listener = (Object v) -> {
+                boolean last;
+                synchronized (values) {
+                    values[index] = v;
+                    pending[0] = pending[0] - 1;
+                    last = pending[0] == 0;
+                }
+                if (last) {
+                    List<Object> list = new ArrayList<>(values.length);
+                    for (Object value : values) {
+                        list.add(value);
+                    }
+                    all.complete(list);
+                }
+            };
+            promises[i].onSuccess(listener);
+            promises[i].onFailure((Throwable err) -> {
+                all.fail(err);
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Waits for two promises, that run concurrently, and combines their
+     * values without casts.
+     *
+     * @param <A> type of the first value
+     * @param <B> type of the second value
+     * @param <R> type of the result
+     * @param first promise
+     * @param second promise
+     * @param combine applied to the values, its exceptions fail the returned
+     * promise
+     * @return a promise of the combined value; it fails as soon as one of the
+     * given promises fails
+     */
+    public static <A, B, R> WowzaPromise<R> allOf(WowzaPromise<A> first, WowzaPromise<B> second, Combine<A, B, R> combine) {
+        return allOf(new WowzaPromise<?>[]{first, second}).thenApply((List<Object> values) -> {
+            return combine.apply(first.getValue(), second.getValue());
+        });
+    }
+
+    /**
+     * Waits for three promises, that run concurrently, and combines their
+     * values without casts.
+     *
+     * @param <A> type of the first value
+     * @param <B> type of the second value
+     * @param <C> type of the third value
+     * @param <R> type of the result
+     * @param first promise
+     * @param second promise
+     * @param third promise
+     * @param combine applied to the values, its exceptions fail the returned
+     * promise
+     * @return a promise of the combined value; it fails as soon as one of the
+     * given promises fails
+     */
+    public static <A, B, C, R> WowzaPromise<R> allOf(WowzaPromise<A> first, WowzaPromise<B> second, WowzaPromise<C> third, Combine3<A, B, C, R> combine) {
+        return allOf(new WowzaPromise<?>[]{first, second, third}).thenApply((List<Object> values) -> {
+            return combine.apply(first.getValue(), second.getValue(), third.getValue());
+        });
+    }
+
+    /**
+     * Waits for the first of the given promises that succeeds.
+     *
+     * @param <T> type of the value
+     * @param promises to wait for
+     * @return a promise of the first value; it fails only if all the given
+     * promises fail
+     */
+    @SafeVarargs
+    public static <T> WowzaPromise<T> anyOf(WowzaPromise<? extends T>... promises) {
+        WowzaPromise<T> any = new WowzaPromise<>();
+        int[] pending = {promises.length};
+        if (promises.length == 0) {
+            any.fail(new RuntimeException("WowzaPromise.anyOf -> no promises"));
+            return any;
+        }
+        OnComplete<T> listener = (T v) -> {
+            any.complete(v);
+        };
+        for (WowzaPromise<? extends T> promise : promises) {
+            promise.onSuccess(listener);
+            promise.onFailure((Throwable err) -> {
+                boolean last;
+                synchronized (pending) {
+                    pending[0] = pending[0] - 1;
+                    last = pending[0] == 0;
+                }
+                if (last) {
+                    any.fail(err);
+                }
+            });
+        }
+        return any;
+    }
+
+    private static <V> void dispatch(OnComplete<? super V> callback, V value) {
+        if (CN.isEdt()) {
+            callback.completed(value);
+        } else {
+            CN.callSerially(() -> {
+                callback.completed(value);
+            });
+        }
+    }
+
+}
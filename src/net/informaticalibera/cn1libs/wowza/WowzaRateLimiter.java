@@ -0,0 +1,257 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Client-side rate limiter of the REST requests sent to the Wowza Streaming
+ * Cloud, to stay within the
+ * <a href="https://www.wowza.com/docs/Wowza-Streaming-Cloud-REST-API-limits" target="noframe">usage
+ * limits</a>.</p>
+ * <p>
+ * Every request belongs to an endpoint class (POLLING, LIFECYCLE or GENERAL),
+ * and every class has its own token bucket: when a bucket is empty, the
+ * requests are queued and sent as soon as new tokens are available. When the
+ * server answers with "429 Too Many Requests", the request is automatically
+ * retried later and the whole class is paused in the meantime.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaRateLimiter {
+
+    /**
+     * Frequent read-only requests: state, stats and thumbnail of a stream.
+     */
+    public static final String POLLING = "polling";
+
+    /**
+     * Requests that create, start or stop streams.
+     */
+    public static final String LIFECYCLE = "lifecycle";
+
+    /**
+     * All the other requests.
+     */
+    public static final String GENERAL = "general";
+
+    private static final Map<String, Bucket> buckets = new HashMap<>();
+    private static int deferredRequests = 0;
+    private static int rateLimitedResponses = 0;
+
+    static {
+        buckets.put(POLLING, new Bucket(5, 10));
+        buckets.put(LIFECYCLE, new Bucket(2, 5));
+        buckets.put(GENERAL, new Bucket(5, 10));
+    }
+
+    private static class Bucket {
+
+        private double ratePerMillis;
+        private int capacity;
+        private double tokens;
+        private long lastRefill = System.currentTimeMillis();
+        private long pausedUntil = 0;
+        private boolean drainScheduled = false;
+        private final LinkedList<Runnable> queue = new LinkedList<>();
+
+        private Bucket(double requestsPerSecond, int burst) {
+            setBudget(requestsPerSecond, burst);
+            tokens = burst;
+        }
+
+        private void setBudget(double requestsPerSecond, int burst) {
+            ratePerMillis = requestsPerSecond / 1000;
+            capacity = burst;
+            tokens = Math.min(tokens, burst);
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerMillis);
+            lastRefill = now;
+        }
+
+        private boolean tryTake(long now) {
+            refill(now);
+            if (now >= pausedUntil && tokens >= 1) {
+                tokens = tokens - 1;
+                return true;
+            }
+            return false;
+        }
+
+        private long delayUntilNextToken(long now) {
+            long delay = (long) Math.ceil((1 - tokens) / ratePerMillis);
+            return Math.max(1, Math.max(delay, pausedUntil - now));
+        }
+    }
+
+    private WowzaRateLimiter() {
+    }
+
+    /**
+     * Sets the budget of an endpoint class.
+     *
+     * @param endpointClass one of POLLING, LIFECYCLE, GENERAL
+     * @param requestsPerSecond is the sustained rate, it must be &gt; 0
+     * @param burst is the max number of requests that can be sent at once, it
+     * must be &gt;= 1
+     */
+    public static synchronized void setBudget(String endpointClass, double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("WowzaRateLimiter.setBudget -> requestsPerSecond must be > 0 and burst must be >= 1");
+        }
+        Bucket bucket = getBucket(endpointClass);
+        bucket.refill(System.currentTimeMillis());
+        bucket.setBudget(requestsPerSecond, burst);
+    }
+
+    /**
+     * Number of requests waiting for a token, in all the endpoint classes.
+     *
+     * @return queue depth
+     */
+    public static synchronized int getQueueDepth() {
+        int depth = 0;
+        for (Bucket bucket : buckets.values()) {
+            depth += bucket.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Number of requests waiting for a token in the given endpoint class.
+     *
+     * @param endpointClass one of POLLING, LIFECYCLE, GENERAL
+     * @return queue depth
+     */
+    public static synchronized int getQueueDepth(String endpointClass) {
+        return getBucket(endpointClass).queue.size();
+    }
+
+    /**
+     * Total number of requests that were delayed by the limiter.
+     *
+     * @return deferred requests since the app start
+     */
+    public static synchronized int getDeferredRequests() {
+        return deferredRequests;
+    }
+
+    /**
+     * Total number of "429 Too Many Requests" responses received.
+     *
+     * @return 429 responses since the app start
+     */
+    public static synchronized int getRateLimitedResponses() {
+        return rateLimitedResponses;
+    }
+
+    /**
+     * Returns the endpoint class of a request.
+     *
+     * @param method http method
+     * @param api path of the request, relative to the api version
+     * @return one of POLLING, LIFECYCLE, GENERAL
+     */
+    static String classify(String method, String api) {
+        if ("GET".equals(method)) {
+            if (api.endsWith("/state") || api.endsWith("/stats") || api.endsWith("/thumbnail_url")) {
+                return POLLING;
+            }
+            return GENERAL;
+        }
+        if (api.endsWith("/start") || api.endsWith("/stop") || "live_streams".equals(api)) {
+            return LIFECYCLE;
+        }
+        return GENERAL;
+    }
+
+    /**
+     * Runs the given request as soon as the budget of its endpoint class
+     * allows it.
+     *
+     * @param endpointClass of the request
+     * @param request to be sent
+     */
+    static void acquire(String endpointClass, Runnable request) {
+        boolean runNow = false;
+        synchronized (WowzaRateLimiter.class) {
+            Bucket bucket = getBucket(endpointClass);
+            if (bucket.queue.isEmpty() && bucket.tryTake(System.currentTimeMillis())) {
+                runNow = true;
+            } else {
+                bucket.queue.add(request);
+                deferredRequests++;
+                scheduleDrain(bucket);
+            }
+        }
+        if (runNow) {
+            request.run();
+        }
+    }
+
+    /**
+     * Pauses the given endpoint class after a "429 Too Many Requests".
+     *
+     * @param endpointClass of the rejected request
+     * @param delay in milliseconds
+     */
+    static synchronized void backOff(String endpointClass, long delay) {
+        Bucket bucket = getBucket(endpointClass);
+        bucket.pausedUntil = Math.max(bucket.pausedUntil, System.currentTimeMillis() + delay);
+        bucket.tokens = 0;
+        rateLimitedResponses++;
+    }
+
+    private static Bucket getBucket(String endpointClass) {
+        Bucket bucket = buckets.get(endpointClass);
+        if (bucket == null) {
+            throw new IllegalArgumentException("WowzaRateLimiter -> unknown endpoint class " + endpointClass);
+        }
+        return bucket;
+    }
+
+    private static void scheduleDrain(Bucket bucket) {
+        if (bucket.drainScheduled) {
+            return;
+        }
+        bucket.drainScheduled = true;
+        WowzaScheduler.schedule("WowzaRateLimiter", () -> {
+            drain(bucket);
+        }, bucket.delayUntilNextToken(System.currentTimeMillis()));
+    }
+
+    private static void drain(Bucket bucket) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (WowzaRateLimiter.class) {
+            bucket.drainScheduled = false;
+            long now = System.currentTimeMillis();
+            while (!bucket.queue.isEmpty() && bucket.tryTake(now)) {
+                ready.add(bucket.queue.removeFirst());
+            }
+            if (!bucket.queue.isEmpty()) {
+                scheduleDrain(bucket);
+            }
+        }
+        for (Runnable request : ready) {
+            request.run();
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.io.NetworkManager;
+import com.codename1.io.rest.ErrorCodeHandler;
+import com.codename1.io.rest.Response;
+import com.codename1.util.OnComplete;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * A REST request to the Wowza Streaming Cloud API, sent with a
+ * WowzaConnection. Identical GET requests that are in flight at the same
+ * time share a single HTTP exchange: the parsed response is passed to all the
+ * callbacks, and the error (also when the server cannot be reached, with
+ * response code 0) to all the error handlers. All the requests are paced by the WowzaRateLimiter. A signed
+ * request rejected with "401 Unauthorized" is signed and sent again once, if
+ * the learned offset of the server clock (see WowzaClock) has changed.
+ *
+ * @author Francesco Galgani
+ */
+class WowzaRequest {
+
+    /**
+     * A shared GET older than this (milliseconds) is considered lost, so a new
+     * identical request doesn't wait for it.
+     */
+    private static final long FLIGHT_TIMEOUT = 60000;
+
+    /**
+     * Max number of retries of a request rejected with "429 Too Many
+     * Requests". The delay before a retry is the one in the Retry-After
+     * header of the response; without it, the delay (milliseconds) before the
+     * first retry is RETRY_DELAY_ON_429, and it doubles at each retry. A
+     * request is not retried if the server asks to wait more than
+     * MAX_RETRY_AFTER.
+     */
+    private static final int MAX_RETRIES_ON_429 = 3;
+    private static final long RETRY_DELAY_ON_429 = 2000;
+    private static final long MAX_RETRY_AFTER = 60000;
+
+    private static final Map<String, Flight<?>> inFlight = new HashMap<>();
+
+    private final String method;
+    private final String api;
+    private String body = null;
+    private ErrorCodeHandler<String> errorHandler = null;
+    private boolean exclusive = false;
+
+    /**
+     * A GET request shared by several callers.
+     */
+    private static class Flight<T> {
+
+        private final long startTime = System.currentTimeMillis();
+        private final List<OnComplete<T>> callbacks = new ArrayList<>();
+        private final List<ErrorCodeHandler<String>> errorHandlers = new ArrayList<>();
+
+        private boolean isStale() {
+            return System.currentTimeMillis() - startTime > FLIGHT_TIMEOUT;
+        }
+    }
+
+    WowzaRequest(String method, String api) {
+        this.method = method;
+        this.api = api;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getApi() {
+        return api;
+    }
+
+    WowzaRequest body(String body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * Don't share this GET with other identical requests already in flight,
+     * because the caller needs a response more recent than them.
+     *
+     * @return this request
+     */
+    WowzaRequest exclusive() {
+        this.exclusive = true;
+        return this;
+    }
+
+    WowzaRequest onErrorCodeString(ErrorCodeHandler<String> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * (Async) Sends the request, decoding the response with the given
+     * streaming decoder, without building the Map representation of the
+     * json. A GET is sent as a conditional request, see
+     * {@link WowzaConnection}.
+     *
+     * @param decoder of the response
+     * @param callback invoked on success, the passed value is null if the
+     * response cannot be decoded
+     */
+    <T> void fetchDecoded(WowzaJsonDecoder<T> decoder, OnComplete<T> callback) {
+        fetch(decoder, callback);
+    }
+
+    private <T> void fetch(WowzaConnection.Parser<T> parser, OnComplete<T> callback) {
+        if (!"GET".equals(method) || exclusive) {
+            send(parser, callback, errorHandler, 0, false);
+            return;
+        }
+
+        String key = parser.getKind() + " " + api;
+        Flight<T> flight;
+        boolean leader = false;
+        synchronized (inFlight) {
+            flight = getFlight(key);
+            if (flight == null || flight.isStale()) {
+                flight = new Flight<>();
+                inFlight.put(key, flight);
+                leader = true;
+            }
+            flight.callbacks.add(callback);
+            flight.errorHandlers.add(errorHandler);
+        }
+
+        if (leader) {
+            Flight<T> sharedFlight = flight;
+            send(parser, (T v) -> {
+                for (OnComplete<T> sharedCallback : land(key, sharedFlight).callbacks) {
+                    sharedCallback.completed(v);
+                }
+            }, (Response<String> v) -> {
+                for (ErrorCodeHandler<String> sharedErrorHandler : land(key, sharedFlight).errorHandlers) {
+                    if (sharedErrorHandler != null) {
+                        sharedErrorHandler.onError(v);
+                    }
+                }
+            }, 0, false);
+        }
+    }
+
+    /**
+     * The flight of the given key, whose parser kind is part of the key (so
+     * the cast is safe).
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Flight<T> getFlight(String key) {
+        return (Flight<T>) inFlight.get(key);
+    }
+
+    /**
+     * Removes the given flight from the in-flight ones, so new requests will
+     * perform a new HTTP exchange.
+     */
+    private static <T> Flight<T> land(String key, Flight<T> flight) {
+        synchronized (inFlight) {
+            if (inFlight.get(key) == flight) {
+                inFlight.remove(key);
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * Sends the request through the WowzaRateLimiter, retrying it after a
+     * "429 Too Many Requests" response, or after a "401 Unauthorized" response
+     * caused by a wrong clock.
+     */
+    private <T> void send(WowzaConnection.Parser<T> parser, OnComplete<T> callback, ErrorCodeHandler<String> errorHandler, int attempt, boolean resigned) {
+        String endpointClass = WowzaRateLimiter.classify(method, api);
+        WowzaRateLimiter.acquire(endpointClass, () -> {
+            WowzaConnectionMonitor.Exchange exchange = WowzaConnectionMonitor.begin();
+            long signedOffset = WowzaClock.getOffset();
+            NetworkManager.getInstance().addToQueue(new WowzaConnection<>(method, api, body, parser, (T v) -> {
+                exchange.end();
+                WowzaLogShipper.networkStatus(true);
+                callback.completed(v);
+            }, (Response<String> v, long retryAfter) -> {
+                exchange.end();
+                // code 0 comes from WowzaConnection.handleException: the server cannot be reached
+                WowzaLogShipper.networkStatus(v.getResponseCode() != 0);
+                long delay = retryAfter >= 0 ? retryAfter : RETRY_DELAY_ON_429 << attempt;
+                if (v.getResponseCode() == 429 && attempt < MAX_RETRIES_ON_429 && delay <= MAX_RETRY_AFTER) {
+                    if (isVerboseLog()) {
+                        Log.p("WowzaRequest -> (Code 429) Too Many Requests for " + method + " " + api + ", retrying within " + delay + " ms", Log.WARNING);
+                    }
+                    WowzaRateLimiter.backOff(endpointClass, delay);
+                    send(parser, callback, errorHandler, attempt + 1, resigned);
+                } else if (v.getResponseCode() == 401 && !resigned && WowzaLiveStream.isHmacAuthentication()) {
+                    resignOn401(parser, callback, errorHandler, attempt, signedOffset, v);
+                } else if (errorHandler != null) {
+                    errorHandler.onError(v);
+                }
+            }));
+        });
+    }
+
+    /**
+     * Handles a "401 Unauthorized" response to a signed request: if the Date
+     * header of the response corrected the clock, the request is signed and
+     * sent again, otherwise the error is passed to the error handler.
+     */
+    private <T> void resignOn401(WowzaConnection.Parser<T> parser, OnComplete<T> callback, ErrorCodeHandler<String> errorHandler, int attempt, long signedOffset, Response<String> response) {
+        if (WowzaClock.getOffset() != signedOffset) {
+            if (isVerboseLog()) {
+                Log.p("WowzaRequest -> (Code 401) Unauthorized for " + method + " " + api + ", signing it again with the server clock offset of " + WowzaClock.getOffset() + " ms", Log.WARNING);
+            }
+            send(parser, callback, errorHandler, attempt, true);
+        } else if (errorHandler != null) {
+            errorHandler.onError(response);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Util;
+
+/**
+ * <p>
+ * Signer of the Wowza Streaming Cloud API requests (HMAC authentication).</p>
+ * <p>
+ * The REST key is xor decoded only once (and again only if it's changed with
+ * WowzaAccount.setRestKey), and the signed string is built in a reusable
+ * buffer. The native HMAC implementations keep an initialized Mac for the
+ * last key, so the key schedule (inner and outer pads) is not computed again
+ * for every request.</p>
+ *
+ * @author Francesco Galgani
+ */
+class WowzaRequestSigner {
+
+    private static String encodedKey = null;
+    private static String key = null;
+    private static final StringBuilder data = new StringBuilder(128);
+
+    private WowzaRequestSigner() {
+    }
+
+    /**
+     * The decoded REST key
+     *
+     * @return the key, or null if it's not set
+     */
+    static synchronized String getKey() {
+        String restKey = WowzaAccount.getRestKey();
+        if (restKey == null ? encodedKey != null : !restKey.equals(encodedKey)) {
+            encodedKey = restKey;
+            key = restKey != null ? Util.xorDecode(restKey) : null;
+        }
+        return key;
+    }
+
+    /**
+     * Signs a request with the current REST key.
+     *
+     * @param requestPath path of the request, like "/api/v1.3/live_streams",
+     * the query parameters are ignored
+     * @param timeStamp of the request, the same sent in the wsc-timestamp
+     * header
+     * @return the wsc-signature header
+     */
+    static synchronized String sign(String requestPath, long timeStamp) {
+        String restKey = getKey();
+        // Only the path (no query parameters), with a leading slash and without a trailing slash
+        int end = requestPath.indexOf('?');
+        if (end < 0) {
+            end = requestPath.length();
+        }
+        data.setLength(0);
+        data.append(timeStamp).append(':');
+        if (!requestPath.startsWith("/")) {
+            data.append('/');
+        }
+        data.append(end < requestPath.length() ? requestPath.substring(0, end) : requestPath);
+        if (data.charAt(data.length() - 1) == '/') {
+            data.setLength(data.length() - 1);
+        }
+        data.append(':').append(restKey);
+        return Utilities.hmac_sha256(restKey, data.toString());
+    }
+
+}
@@ -0,0 +1,282 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * Shared scheduler for all the delayed and periodic tasks of this CN1Lib
+ * (state polling, rate limiting, reconnections, etc.): all the tasks run on
+ * the same background thread, ordered by execution time, instead of creating
+ * a new Timer (and so a new thread) for every delayed task.</p>
+ * <p>
+ * The tasks should be short: long operations delay the other tasks. The
+ * thread exits after 30 seconds without tasks, so it doesn't keep the app
+ * alive.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaScheduler {
+
+    /**
+     * Receives the metrics of every executed task.
+     */
+    public interface MetricsListener {
+
+        /**
+         * Invoked after the execution of a task, on the scheduler thread.
+         *
+         * @param name of the task
+         * @param lateness milliseconds between the planned and the actual
+         * execution time
+         * @param duration milliseconds spent running the task
+         */
+        public void taskExecuted(String name, long lateness, long duration);
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static class Task {
+
+        private final String name;
+        private final Runnable runnable;
+        private final long period;
+        private long executionTime;
+        private long sequence;
+        private boolean cancelled = false;
+        private boolean done = false;
+
+        private Task(String name, Runnable runnable, long executionTime, long period) {
+            this.name = name;
+            this.runnable = runnable;
+            this.executionTime = executionTime;
+            this.period = period;
+        }
+
+        /**
+         * Name of the task, used by the metrics
+         *
+         * @return name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Cancels the task: if it's not running, it will not run anymore.
+         */
+        public void cancel() {
+            synchronized (queue) {
+                cancelled = true;
+                queue.remove(this);
+            }
+        }
+
+        /**
+         * Returns true if the task was cancelled
+         *
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            synchronized (queue) {
+                return cancelled;
+            }
+        }
+
+        /**
+         * Returns true if a one-shot task was executed
+         *
+         * @return true if executed
+         */
+        public boolean isDone() {
+            synchronized (queue) {
+                return done;
+            }
+        }
+    }
+
+    /**
+     * Time (milliseconds) after which the scheduler thread exits if there are
+     * no tasks: a new thread is started by the next scheduled task.
+     */
+    private static final long IDLE_TIMEOUT = 30000;
+
+    private static final ArrayList<Task> queue = new ArrayList<>();
+    private static Thread thread = null;
+    private static MetricsListener metricsListener = null;
+    private static long sequenceCounter = 0;
+    private static int executedTasks = 0;
+
+    private WowzaScheduler() {
+    }
+
+    /**
+     * Runs the given task once, after the given delay.
+     *
+     * @param name of the task, used by the metrics
+     * @param task to be run
+     * @param delay in milliseconds
+     * @return the handle of the scheduled task
+     */
+    public static Task schedule(String name, Runnable task, long delay) {
+        return enqueue(new Task(name, task, System.currentTimeMillis() + Math.max(0, delay), 0));
+    }
+
+    /**
+     * Runs the given task periodically, waiting the given period between the
+     * end of an execution and the start of the next one, until it's cancelled.
+     *
+     * @param name of the task, used by the metrics
+     * @param task to be run
+     * @param initialDelay in milliseconds
+     * @param period in milliseconds, it must be &gt; 0
+     * @return the handle of the scheduled task
+     */
+    public static Task scheduleWithFixedDelay(String name, Runnable task, long initialDelay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("WowzaScheduler.scheduleWithFixedDelay -> period must be > 0");
+        }
+        return enqueue(new Task(name, task, System.currentTimeMillis() + Math.max(0, initialDelay), period));
+    }
+
+    /**
+     * Sets a listener that receives the metrics of every executed task.
+     *
+     * @param listener or null to remove it
+     */
+    public static void setMetricsListener(MetricsListener listener) {
+        synchronized (queue) {
+            metricsListener = listener;
+        }
+    }
+
+    /**
+     * Number of tasks waiting to be run
+     *
+     * @return pending tasks
+     */
+    public static int getPendingTasks() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Number of task executions since the app start
+     *
+     * @return executed tasks
+     */
+    public static int getExecutedTasks() {
+        synchronized (queue) {
+            return executedTasks;
+        }
+    }
+
+    private static Task enqueue(Task task) {
+        synchronized (queue) {
+            task.sequence = sequenceCounter++;
+            insert(task);
+            if (thread == null) {
+                thread = new Thread(() -> {
+                    loop();
+                }, "WowzaScheduler");
+                thread.start();
+            }
+            queue.notify();
+        }
+        return task;
+    }
+
+    /**
+     * Binary insertion, ordered by execution time and then by sequence.
+     */
+    private static void insert(Task task) {
+        int low = 0;
+        int high = queue.size();
+        while (low < high) {
+            int middle = (low + high) / 2;
+            Task other = queue.get(middle);
+            if (other.executionTime < task.executionTime || (other.executionTime == task.executionTime && other.sequence < task.sequence)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        queue.add(low, task);
+    }
+
+    private static void loop() {
+        while (true) {
+            Task task;
+            MetricsListener listener;
+            synchronized (queue) {
+                if (queue.isEmpty()) {
+                    try {
+                        queue.wait(IDLE_TIMEOUT);
+                    } catch (InterruptedException ex) {
+                    }
+                    if (queue.isEmpty()) {
+                        // idle, so the thread doesn't keep the app alive
+                        thread = null;
+                        return;
+                    }
+                    continue;
+                }
+                task = queue.get(0);
+                long delay = task.executionTime - System.currentTimeMillis();
+                if (delay > 0) {
+                    try {
+                        queue.wait(delay);
+                    } catch (InterruptedException ex) {
+                    }
+                    continue;
+                }
+                queue.remove(0);
+                listener = metricsListener;
+            }
+
+            long planned = task.executionTime;
+            long start = System.currentTimeMillis();
+            try {
+                task.runnable.run();
+            } catch (Throwable ex) {
+                Log.e(ex);
+            }
+            long end = System.currentTimeMillis();
+
+            synchronized (queue) {
+                executedTasks++;
+                if (task.period > 0) {
+                    if (!task.cancelled) {
+                        task.executionTime = end + task.period;
+                        task.sequence = sequenceCounter++;
+                        insert(task);
+                    }
+                } else {
+                    task.done = true;
+                }
+            }
+            if (listener != null) {
+                try {
+                    listener.taskExecuted(task.name, start - planned, end - start);
+                } catch (Throwable ex) {
+                    Log.e(ex);
+                }
+            }
+        }
+    }
+
+}
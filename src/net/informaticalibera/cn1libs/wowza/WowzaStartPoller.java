@@ -0,0 +1,255 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.util.OnComplete;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Polls the state of a stream after a start request, until the stream is
+ * started. It's returned by
+ * {@link WowzaLiveStream#startWithPoller(java.lang.String, com.codename1.util.OnComplete, java.lang.Runnable, java.lang.Integer)}
+ * and it can be used to cancel the polling or to read its metrics.</p>
+ * <p>
+ * The state is checked once right after the start request, then the polling
+ * interval is adaptive: the first time a stream is started in a broadcast
+ * location, the state is checked often (starting from 1 second)
+ * and then less often (up to 10 seconds). The time needed to start the
+ * transcoders is remembered for every broadcast location, so the next starts
+ * in the same location concentrate the requests around the expected
+ * warm-up time.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaStartPoller {
+
+    private static final long MIN_INTERVAL = 1000;
+    private static final long MAX_INTERVAL = 10000;
+    private static final double BACKOFF_FACTOR = 1.5;
+    private static final double WARM_UP_WEIGHT = 0.3;
+    private static final String UNKNOWN_LOCATION = "unknown";
+
+    /**
+     * Max number of streams whose broadcast location is remembered: the least
+     * recently used are forgotten first.
+     */
+    private static final int MAX_LOCATIONS = 500;
+
+    private static final Map<String, Long> warmUpTimes = new HashMap<>();
+    private static final Map<String, String> locations = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_LOCATIONS;
+        }
+    };
+
+    private final String id;
+    private final String location;
+    private long startingTime;
+    private long lastInterval = 0;
+    private int pollCount = 0;
+    private long timeToStarted = -1;
+    private boolean cancelled = false;
+
+    WowzaStartPoller(String id) {
+        this.id = id;
+        this.location = getLocation(id);
+    }
+
+    /**
+     * Id of the stream
+     *
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Stops the polling: the isStarted and onFail callbacks of the start
+     * request will not be invoked anymore. Note that the stream is not
+     * stopped.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if the polling was cancelled
+     *
+     * @return true if cancelled
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Number of state requests performed so far
+     *
+     * @return poll count
+     */
+    public synchronized int getPollCount() {
+        return pollCount;
+    }
+
+    /**
+     * Milliseconds elapsed between the start request and the "started" state
+     *
+     * @return time-to-started, or -1 if the stream is not started yet
+     */
+    public synchronized long getTimeToStarted() {
+        return timeToStarted;
+    }
+
+    /**
+     * Average time needed to start a stream in the given broadcast location,
+     * as observed by this app.
+     *
+     * @param broadcastLocation of the stream, for example "eu_germany"
+     * @return milliseconds, or -1 if no stream was started in that location
+     */
+    public static synchronized long getExpectedWarmUpTime(String broadcastLocation) {
+        Long time = warmUpTimes.get(broadcastLocation);
+        return time != null ? time : -1;
+    }
+
+    /**
+     * Remembers the broadcast location of a stream.
+     *
+     * @param id of the stream
+     * @param broadcastLocation of the stream
+     */
+    static synchronized void setLocation(String id, String broadcastLocation) {
+        if (id != null && broadcastLocation != null) {
+            locations.put(id, broadcastLocation);
+        }
+    }
+
+    private static synchronized String getLocation(String id) {
+        String location = locations.get(id);
+        return location != null ? location : UNKNOWN_LOCATION;
+    }
+
+    /**
+     * Remembers the time needed to start the given stream, for its broadcast
+     * location.
+     *
+     * @param id of the stream
+     * @param time in milliseconds
+     */
+    static void recordWarmUpTime(String id, long time) {
+        recordLocationWarmUpTime(getLocation(id), time);
+    }
+
+    private static synchronized void recordLocationWarmUpTime(String location, long time) {
+        Long previous = warmUpTimes.get(location);
+        if (previous == null) {
+            warmUpTimes.put(location, time);
+        } else {
+            warmUpTimes.put(location, (long) (previous * (1 - WARM_UP_WEIGHT) + time * WARM_UP_WEIGHT));
+        }
+    }
+
+    /**
+     * Starts polling, the stream must be in the "starting" state.
+     *
+     * @param maxTime timeout in milliseconds
+     * @param isStarted is a callback called when the starting is completed
+     * @param onFail is a callback for failure
+     */
+    void poll(long maxTime, OnComplete<String> isStarted, Runnable onFail) {
+        synchronized (this) {
+            startingTime = System.currentTimeMillis();
+        }
+        check(maxTime, isStarted, onFail);
+    }
+
+    private void check(long maxTime, OnComplete<String> isStarted, Runnable onFail) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            pollCount++;
+        }
+        // check the timeout
+        if (System.currentTimeMillis() - startingTime > maxTime) {
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaLiveStream.start -> Timeout reached while starting the stream with id " + id, Log.ERROR);
+            }
+            onFail.run();
+            return;
+        }
+        WowzaLiveStream.fetchState(id, myId -> {
+            // the stream is started
+            long elapsed;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                elapsed = System.currentTimeMillis() - startingTime;
+                timeToStarted = elapsed;
+            }
+            recordLocationWarmUpTime(location, elapsed);
+            if (isVerboseLog()) {
+                Log.p("WowzaLiveStream.start -> Successfully started the stream with id " + id + " after " + (elapsed / 1000) + " seconds and " + getPollCount() + " state requests", Log.DEBUG);
+            }
+            isStarted.completed(id);
+        }, myId -> {
+            // the stream is starting
+            if (!isCancelled()) {
+                WowzaScheduler.schedule("WowzaStartPoller", () -> {
+                    check(maxTime, isStarted, onFail);
+                }, Math.min(nextInterval(), Math.max(0, startingTime + maxTime - System.currentTimeMillis()) + 1));
+            }
+        }, myId -> {
+            // other state
+            if (isCancelled()) {
+                return;
+            }
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaLiveStream.start -> Invalid state after starting the stream with id " + id, Log.ERROR);
+            }
+            onFail.run();
+        }, () -> {
+            if (!isCancelled()) {
+                onFail.run();
+            }
+        });
+    }
+
+    /**
+     * Next polling interval: if the warm-up time of the location is known,
+     * the interval halves the remaining time to the expected "started"
+     * state; after that (or if the warm-up time is unknown) the interval
+     * grows exponentially.
+     */
+    private synchronized long nextInterval() {
+        long expected = getExpectedWarmUpTime(location);
+        long remaining = expected - (System.currentTimeMillis() - startingTime);
+        if (remaining > MIN_INTERVAL) {
+            return Math.max(MIN_INTERVAL, remaining / 2);
+        }
+        if (lastInterval == 0) {
+            lastInterval = MIN_INTERVAL;
+        } else {
+            lastInterval = Math.min(MAX_INTERVAL, (long) (lastInterval * BACKOFF_FACTOR));
+        }
+        return lastInterval;
+    }
+
+}
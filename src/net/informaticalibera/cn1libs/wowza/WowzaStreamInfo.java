@@ -0,0 +1,108 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+/**
+ * Immutable snapshot of a live stream of the pool, as returned by the
+ * "live_streams" list. Only the "id" is always present: the other fields are
+ * null if the server didn't include them in the list response.
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaStreamInfo {
+
+    private final String id;
+    private final String name;
+    private final String state;
+    private final String connection_code;
+    private final String broadcast_location;
+
+    WowzaStreamInfo(String id, String name, String state, String connection_code, String broadcast_location) {
+        this.id = id;
+        this.name = name;
+        this.state = state;
+        this.connection_code = connection_code;
+        this.broadcast_location = broadcast_location;
+    }
+
+    /**
+     * Unique alphanumeric string that identifies the live stream
+     *
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Descriptive name for the live stream
+     *
+     * @return name, or null if unknown
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * State of the live stream at the time of the snapshot
+     *
+     * @return one of: started, stopped, starting, stopping, resetting (or null
+     * if unknown)
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Six-character, alphanumeric string that allows certain encoders to
+     * connect with Wowza Streaming Cloud
+     *
+     * @return connection_code, or null if unknown
+     */
+    public String getConnection_code() {
+        return connection_code;
+    }
+
+    /**
+     * Location where the transcoder runs
+     *
+     * @return broadcast_location, or null if unknown
+     */
+    public String getBroadcast_location() {
+        return broadcast_location;
+    }
+
+    /**
+     * Returns true if the state is known and it's "stopped"
+     *
+     * @return true if the stream is known to be stopped
+     */
+    public boolean isStopped() {
+        return "stopped".equals(state);
+    }
+
+    /**
+     * Returns true if the snapshot includes the state of the stream
+     *
+     * @return true if the state is known
+     */
+    public boolean isStateKnown() {
+        return state != null;
+    }
+
+    @Override
+    public String toString() {
+        return "WowzaStreamInfo{id=" + id + ", name=" + name + ", state=" + state + ", broadcast_location=" + broadcast_location + "}";
+    }
+
+}
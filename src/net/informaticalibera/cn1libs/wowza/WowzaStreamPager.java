@@ -0,0 +1,338 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.io.rest.Response;
+import com.codename1.util.OnComplete;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+import static net.informaticalibera.cn1libs.wowza.WowzaLiveStream.getRequest;
+
+/**
+ * <p>
+ * Iterates over the streams of the current account one page at a time,
+ * requesting the pages on demand ("page" and "per_page" query parameters of
+ * the "live_streams" list). While a page is being consumed, the next one is
+ * already prefetched, so at most two pages are kept in memory regardless of
+ * the account size.</p>
+ * <p>
+ * Usage: call {@link #next(OnComplete, Runnable)} and, when its callback is
+ * invoked, call it again if {@link #hasNext()} is true. Call
+ * {@link #close()} to stop early: the pending page is discarded. The last
+ * page can be empty.</p>
+ * <p>
+ * The paging doesn't rely only on the server honoring "page" and
+ * "per_page": it also ends when a page brings no new streams (or starts with
+ * the same stream of the previous page), as it happens if the server always
+ * returns the same page, and in any case after MAX_PAGES pages.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaStreamPager {
+
+    /**
+     * Default number of streams per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Max number of streams per page accepted by the Wowza API.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Max number of pages requested by a pager.
+     */
+    public static final int MAX_PAGES = 1000;
+
+    private final int pageSize;
+    private int nextPage = 1;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private int totalCount = -1;
+    private int receivedCount = 0;
+    private boolean lastPageReceived = false;
+    private int pagesReceived = 0;
+    // ids of the previous page, to detect a server that ignores the pagination
+    private Set<String> previousIds = new HashSet<>();
+    private String previousFirstId = null;
+    private PageRequest prefetched = null;
+    private PageRequest current = null;
+
+    /**
+     * A decoded page of the "live_streams" list.
+     */
+    static class Page {
+
+        final List<WowzaStreamInfo> streams;
+        final int totalRecords;
+
+        Page(List<WowzaStreamInfo> streams, int totalRecords) {
+            this.streams = streams;
+            this.totalRecords = totalRecords;
+        }
+    }
+
+    /**
+     * A page requested to the server, possibly not received yet.
+     */
+    private static class PageRequest {
+
+        private final int page;
+        private boolean completed = false;
+        private List<WowzaStreamInfo> streams = null;
+        private OnComplete<List<WowzaStreamInfo>> onPage = null;
+        private Runnable onFail = null;
+
+        private PageRequest(int page) {
+            this.page = page;
+        }
+    }
+
+    /**
+     * Creates a pager, see {@link WowzaLiveStream#pageLiveStreams(int)}
+     *
+     * @param pageSize number of streams per page, between 1 and
+     * MAX_PAGE_SIZE
+     */
+    WowzaStreamPager(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("WowzaStreamPager -> pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Number of streams per page
+     *
+     * @return pageSize
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Total number of streams of the account, if the server reported it.
+     *
+     * @return total number of streams, or -1 if unknown
+     */
+    public synchronized int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Number of streams received so far, including the prefetched page.
+     *
+     * @return number of received streams
+     */
+    public synchronized int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Number of streams of the account, if it's known: the total reported by
+     * the server, or the number of received streams once the last page was
+     * received.
+     *
+     * @return number of streams, or -1 if unknown
+     */
+    synchronized int getKnownTotalCount() {
+        if (totalCount >= 0) {
+            return totalCount;
+        }
+        return lastPageReceived ? receivedCount : -1;
+    }
+
+    /**
+     * Checks if there are other pages to be requested with next().
+     *
+     * @return true if next() can be invoked
+     */
+    public synchronized boolean hasNext() {
+        return !closed && (prefetched != null || !exhausted);
+    }
+
+    /**
+     * Stops the paging: the pending and prefetched pages are discarded and
+     * their callbacks are never invoked.
+     */
+    public synchronized void close() {
+        closed = true;
+        prefetched = null;
+        current = null;
+    }
+
+    /**
+     * (Async) Gets the next page of streams, and prefetches the following one.
+     *
+     * @param onPage callback invoked with the streams of the page
+     * @param onFail callback invoked on failure, after which the pager has no
+     * more pages
+     */
+    public void next(OnComplete<List<WowzaStreamInfo>> onPage, Runnable onFail) {
+        PageRequest request;
+        synchronized (this) {
+            if (!hasNext()) {
+                throw new IllegalStateException("WowzaStreamPager.next -> there are no more pages");
+            }
+            if (current != null) {
+                throw new IllegalStateException("WowzaStreamPager.next -> the previous page has not been received yet");
+            }
+            if (prefetched != null) {
+                request = prefetched;
+                prefetched = null;
+            } else {
+                request = request(nextPage++);
+            }
+            request.onPage = onPage;
+            request.onFail = onFail;
+            current = request;
+            if (!request.completed) {
+                return;
+            }
+        }
+        deliver(request);
+    }
+
+    /**
+     * Sends the request of the given page.
+     */
+    private PageRequest request(int page) {
+        PageRequest request = new PageRequest(page);
+        getRequest("live_streams?page=" + page + "&per_page=" + pageSize)
+                .onErrorCodeString((Response<String> v) -> {
+                    if (isVerboseLog()) {
+                        WowzaLogShipper.log("WowzaStreamPager.next -> Response with code " + v.getResponseCode() + ", failed to get the page " + page + " of the streams of the current account, string returned by the server: \"" + v.getResponseData() + "\"", Log.ERROR);
+                    }
+                    received(request, null);
+                })
+                .fetchDecoded(new WowzaJsonDecoder.StreamPage(), (Page v) -> {
+                    if (v == null && isVerboseLog()) {
+                        WowzaLogShipper.log("WowzaStreamPager.next -> (Code 200) Error: invalid page " + page + " of streams returned by the server", Log.ERROR);
+                    }
+                    received(request, v);
+                });
+        return request;
+    }
+
+    /**
+     * Stores the given page, delivering it if next() is waiting for it.
+     */
+    private void received(PageRequest request, Page page) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            request.completed = true;
+            if (page == null) {
+                exhausted = true;
+            } else {
+                request.streams = accept(page, request.page);
+            }
+            if (current != request) {
+                return; // prefetched page, next() will deliver it
+            }
+        }
+        deliver(request);
+    }
+
+    /**
+     * Updates the state of the paging with a received page.
+     *
+     * @param page received from the server
+     * @param number of the page
+     * @return the streams to be delivered, an empty list if the page repeats
+     * the previous one
+     */
+    synchronized List<WowzaStreamInfo> accept(Page page, int number) {
+        pagesReceived++;
+        if (isRepeated(page.streams)) {
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaStreamPager.next -> The page " + number + " has no new streams, the server ignores the pagination: the paging ends", Log.WARNING);
+            }
+            exhausted = true;
+            lastPageReceived = true;
+            return new ArrayList<>();
+        }
+        previousIds = new HashSet<>();
+        for (WowzaStreamInfo info : page.streams) {
+            previousIds.add(info.getId());
+        }
+        previousFirstId = page.streams.isEmpty() ? null : page.streams.get(0).getId();
+        receivedCount += page.streams.size();
+        if (page.totalRecords >= 0) {
+            totalCount = page.totalRecords;
+        }
+        if (page.streams.size() < pageSize || (totalCount >= 0 && receivedCount >= totalCount)) {
+            exhausted = true;
+            lastPageReceived = true;
+        } else if (pagesReceived >= MAX_PAGES) {
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaStreamPager.next -> Reached the max number of pages (" + MAX_PAGES + "), the paging ends", Log.WARNING);
+            }
+            exhausted = true;
+        }
+        for (WowzaStreamInfo info : page.streams) {
+            StreamStateCache.put(info.getId(), info.getState());
+            WowzaStartPoller.setLocation(info.getId(), info.getBroadcast_location());
+        }
+        if (isVerboseLog()) {
+            Log.p("WowzaStreamPager.next -> (Code 200) Successfully get the page " + number + " with " + page.streams.size() + " streams", Log.DEBUG);
+        }
+        return page.streams;
+    }
+
+    /**
+     * Checks if the given streams are the same of the previous page.
+     */
+    private boolean isRepeated(List<WowzaStreamInfo> streams) {
+        if (streams.isEmpty() || previousFirstId == null) {
+            return false;
+        }
+        if (previousFirstId.equals(streams.get(0).getId())) {
+            return true;
+        }
+        for (WowzaStreamInfo info : streams) {
+            if (!previousIds.contains(info.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes the given page to its callbacks, after starting the prefetch of
+     * the next one.
+     */
+    private void deliver(PageRequest request) {
+        synchronized (this) {
+            if (current != request) {
+                return;
+            }
+            current = null;
+            if (request.streams != null && !exhausted && !closed) {
+                prefetched = request(nextPage++);
+            }
+        }
+        if (request.streams == null) {
+            request.onFail.run();
+        } else {
+            request.onPage.completed(request.streams);
+        }
+    }
+
+}
@@ -0,0 +1,785 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.Log;
+import com.codename1.ui.CN;
+import com.codename1.util.OnComplete;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static net.informaticalibera.cn1libs.wowza.WowzaAccount.isVerboseLog;
+
+/**
+ * <p>
+ * Long-lived pool of stopped streams, kept ready in background: unlike
+ * {@link WowzaLiveStream#getStreamFromPool(int, int, net.informaticalibera.cn1libs.wowza.WowzaLiveStreamParams, com.codename1.util.OnComplete, java.lang.Runnable)},
+ * that queries the server at every call, this pool keeps a local list of
+ * stopped streams, so {@link #acquire(com.codename1.util.OnComplete, java.lang.Runnable)}
+ * returns immediately when the list is not empty.</p>
+ * <p>
+ * When the available streams fall below the threshold percentage of the
+ * target size, new streams are created in background. Note that you can
+ * create up to 10 streams within 3 hours, see
+ * <a href="https://www.wowza.com/docs/Wowza-Streaming-Cloud-REST-API-limits" target="noframe">usage
+ * limits</a>.</p>
+ * <p>
+ * Example:</p>
+ * <pre>
+ * WowzaStreamPool pool = new WowzaStreamPool(5, 50, null);
+ * pool.startBackgroundRefresh(60000);
+ * ...
+ * pool.acquire(id -&gt; { ... }, () -&gt; { ... });
+ * ...
+ * pool.release(id); // after stopping the stream
+ * </pre>
+ * <p>
+ * Optionally, the pool can also keep some streams already started (see
+ * {@link #setStartedTier(int, long)}), so that
+ * {@link #acquireStarted(com.codename1.util.OnComplete, java.lang.Runnable)}
+ * can return a stream ready to ingest without waiting for the transcoder
+ * start.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaStreamPool {
+
+    private static final int MAX_CONCURRENT_PROBES = 4;
+    private static final int MAX_PROBES_PER_REFRESH = 10;
+
+    private final int targetSize;
+    private final int threshold;
+    private final WowzaLiveStreamParams defaultParams;
+
+    private final LinkedList<String> freeList = new LinkedList<>();
+    private final Set<String> inUse = new HashSet<>();
+    private final LinkedList<Waiter> waiting = new LinkedList<>();
+    private final Map<String, Long> leasedElsewhere = new HashMap<>();
+    private int poolSize = 0;
+    private int creating = 0;
+    private boolean refreshing = false;
+    private int probeOffset = 0;
+    private long leaseDuration = 0;
+
+    // hot-standby tier of started streams
+    private int startedTierSize = 0;
+    private long startedIdleTtl = 0;
+    private final LinkedList<String> startedList = new LinkedList<>();
+    private final Map<String, WowzaScheduler.Task> idleStops = new HashMap<>();
+    private final Set<String> standby = new HashSet<>();
+    private int startingCount = 0;
+    private int startedHits = 0;
+    private int startedMisses = 0;
+    private WowzaScheduler.Task refreshTask = null;
+
+    /**
+     * An acquire(...) waiting for a stopped stream.
+     */
+    private static class Waiter {
+
+        private final OnComplete<String> onComplete;
+        private final Runnable onFail;
+
+        private Waiter(OnComplete<String> onComplete, Runnable onFail) {
+            this.onComplete = onComplete;
+            this.onFail = onFail;
+        }
+    }
+
+    /**
+     * Creates a pool; call refresh() or startBackgroundRefresh(...) to fill
+     * it.
+     *
+     * @param targetSize is the number of stopped streams to keep ready
+     * @param threshold is a percentage of the targetSize: when the available
+     * streams are less than this percentage, new streams are created
+     * @param defaultParams can be used to customize the parameters (except the
+     * name) of the new streams, it can be null to use the default parameters
+     */
+    public WowzaStreamPool(int targetSize, int threshold, WowzaLiveStreamParams defaultParams) {
+        if (targetSize < 1) {
+            throw new IllegalArgumentException("WowzaStreamPool -> targetSize must be >= 1");
+        }
+        if (threshold < 0 || threshold > 100) {
+            throw new IllegalArgumentException("WowzaStreamPool -> threshold must be between 0 and 100");
+        }
+        this.targetSize = targetSize;
+        this.threshold = threshold;
+        this.defaultParams = defaultParams;
+    }
+
+    /**
+     * Refreshes the pool now and then periodically, in background.
+     *
+     * @param period in milliseconds between two refreshes
+     */
+    public synchronized void startBackgroundRefresh(long period) {
+        stopBackgroundRefresh();
+        refreshTask = WowzaScheduler.scheduleWithFixedDelay("WowzaStreamPool.refresh", () -> {
+            CN.callSerially(() -> {
+                refresh();
+            });
+        }, 0, period);
+    }
+
+    /**
+     * Stops the periodic refresh.
+     */
+    public synchronized void stopBackgroundRefresh() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+    }
+
+    /**
+     * (Async) Rebuilds the list of the available streams querying the server,
+     * and then creates new streams if needed. The state of a stream is
+     * checked with a further request only when it's unknown and the stream
+     * could be added to the available ones, and only as many as needed to
+     * reach the target size (at most 10 for every refresh).
+     */
+    public void refresh() {
+        synchronized (this) {
+            if (refreshing) {
+                return;
+            }
+            refreshing = true;
+        }
+        WowzaLiveStream.fetchPoolSnapshot((List<WowzaStreamInfo> streams) -> {
+            List<String> stopped = new ArrayList<>();
+            List<String> unknown = new ArrayList<>();
+            List<String> toProbe;
+            synchronized (this) {
+                poolSize = streams.size();
+                int candidates = 0;
+                for (WowzaStreamInfo stream : streams) {
+                    String id = stream.getId();
+                    if (stream.isStopped()) {
+                        stopped.add(id);
+                        if (isCandidate(id)) {
+                            candidates++;
+                        }
+                    } else if (!stream.isStateKnown() && isCandidate(id)) {
+                        unknown.add(id);
+                    }
+                }
+                toProbe = selectProbes(unknown, targetSize - candidates);
+            }
+            probe(toProbe, stopped, () -> {
+                synchronized (this) {
+                    freeList.clear();
+                    for (String id : stopped) {
+                        if (isCandidate(id)) {
+                            freeList.add(id);
+                        }
+                    }
+                    refreshing = false;
+                }
+                if (isVerboseLog()) {
+                    Log.p("WowzaStreamPool.refresh -> " + getAvailableCount() + " stopped streams available in a pool of " + streams.size() + " streams", Log.DEBUG);
+                }
+                replenish();
+                serveWaiting();
+            });
+        }, () -> {
+            synchronized (this) {
+                refreshing = false;
+            }
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaStreamPool.refresh -> Failed to get the streams of the pool", Log.ERROR);
+            }
+            serveWaiting();
+        });
+    }
+
+    /**
+     * True if the given stopped stream can be added to the free list.
+     */
+    private synchronized boolean isCandidate(String id) {
+        return !inUse.contains(id) && !standby.contains(id) && !isLeasedElsewhere(id);
+    }
+
+    /**
+     * The streams with unknown state to be checked by this refresh: at most
+     * the missing free streams, and at most MAX_PROBES_PER_REFRESH. The
+     * selection rotates at every refresh, so the streams that are not checked
+     * now are checked by the next ones.
+     *
+     * @param unknown candidates for the free list with unknown state
+     * @param missing number of free streams missing to reach the target size
+     * @return the streams to check
+     */
+    private List<String> selectProbes(List<String> unknown, int missing) {
+        int count = Math.min(unknown.size(), Math.min(missing, MAX_PROBES_PER_REFRESH));
+        List<String> selected = new ArrayList<>();
+        if (count <= 0) {
+            return selected;
+        }
+        int first = probeOffset % unknown.size();
+        for (int i = 0; i < count; i++) {
+            selected.add(unknown.get((first + i) % unknown.size()));
+        }
+        probeOffset = first + count;
+        return selected;
+    }
+
+    /**
+     * Checks the state of the given streams, with a limited number of
+     * concurrent requests, adding the stopped ones to the given list.
+     */
+    private void probe(List<String> ids, List<String> stopped, Runnable onDone) {
+        if (ids.isEmpty()) {
+            onDone.run();
+            return;
+        }
+        int[] nextIndex = {0};
+        int[] completed = {0};
+        Runnable[] probeNext = {null};
+        probeNext[0] = () -> {
+            if (nextIndex[0] >= ids.size()) {
+                return;
+            }
+            String id = ids.get(nextIndex[0]);
+            nextIndex[0] = nextIndex[0] + 1;
+            Runnable next = () -> {
+                completed[0] = completed[0] + 1;
+                if (completed[0] == ids.size()) {
+                    onDone.run();
+                } else {
+                    probeNext[0].run();
+                }
+            };
+            WowzaLiveStream.fetchState(id, streamId -> {
+                stopped.add(streamId);
+                next.run();
+            }, streamId -> {
+                next.run();
+            }, next);
+        };
+        for (int i = 0; i < MAX_CONCURRENT_PROBES; i++) {
+            probeNext[0].run();
+        }
+    }
+
+    /**
+     * <p>
+     * Enables the reservation of the acquired streams, to avoid that other
+     * devices get the same stopped stream at the same time: the lease is
+     * stored in the description of the transcoder of the stream, and the
+     * streams leased by other devices are skipped. By default it's disabled.
+     * </p>
+     * <p>
+     * Reserving a stream requires three REST requests (read, write and check
+     * of the lease), so the acquisition is slower. The REST API has no
+     * compare-and-set, so the lease is best-effort: when the pool starts a
+     * leased stream (acquireStarted and the started tier), the lease is read
+     * again just before the start, and the stream is given up if another
+     * device took it. Streams leased by other devices, or whose transcoder has
+     * a custom description, are not offered again until their lease expires.
+     * The lease is removed by release(...), or it expires after the given
+     * duration.</p>
+     *
+     * @param leaseDuration in milliseconds, 0 to disable the leases
+     */
+    public synchronized void setLeaseDuration(long leaseDuration) {
+        if (leaseDuration < 0) {
+            throw new IllegalArgumentException("WowzaStreamPool.setLeaseDuration -> leaseDuration must be >= 0");
+        }
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * (Async) Gets a stopped stream: if the pool has available streams, the
+     * onComplete callback is invoked immediately (or after the lease, if
+     * enabled), otherwise it's invoked after the refresh of the pool or after
+     * the creation of a new stream. The returned stream is considered in use
+     * until it's released.
+     *
+     * @param onComplete callback invoked on success, the passed value is the id
+     * of a stopped stream of the pool
+     * @param onFail callback invoked on failure
+     */
+    public void acquire(OnComplete<String> onComplete, Runnable onFail) {
+        String id = null;
+        synchronized (this) {
+            if (!freeList.isEmpty()) {
+                id = freeList.removeFirst();
+                inUse.add(id);
+            } else {
+                waiting.add(new Waiter(onComplete, onFail));
+            }
+        }
+        if (id != null) {
+            if (isVerboseLog()) {
+                Log.p("WowzaStreamPool.acquire -> Got the stream " + id + " from the local pool, " + getAvailableCount() + " streams still available", Log.DEBUG);
+            }
+            replenish();
+            lease(id, onComplete, onFail);
+            return;
+        }
+
+        if (isVerboseLog()) {
+            Log.p("WowzaStreamPool.acquire -> No streams available in the local pool, waiting for the refresh of the pool", Log.DEBUG);
+        }
+        refresh();
+    }
+
+    /**
+     * Reserves the given stream, if the leases are enabled, before passing it
+     * to onComplete.
+     */
+    private void lease(String id, OnComplete<String> onComplete, Runnable onFail) {
+        long duration;
+        synchronized (this) {
+            duration = leaseDuration;
+        }
+        if (duration <= 0) {
+            onComplete.completed(id);
+            return;
+        }
+        StreamLease.acquire(id, duration, onComplete, (Long until) -> {
+            // another device got this stream, we try the next one
+            leasedElsewhere(id, until);
+            acquire(onComplete, onFail);
+        }, () -> {
+            synchronized (this) {
+                inUse.remove(id);
+            }
+            onFail.run();
+        });
+    }
+
+    /**
+     * Starts the given stream, verifying its lease just before the start if
+     * the leases are enabled.
+     *
+     * @param onLost invoked if the lease was taken by another device, the
+     * stream is not started
+     */
+    private void startLeased(String id, OnComplete<String> isStarted, Runnable onFail, Runnable onLost) {
+        long duration;
+        synchronized (this) {
+            duration = leaseDuration;
+        }
+        if (duration <= 0) {
+            WowzaLiveStream.start(id, isStarted, onFail, null);
+            return;
+        }
+        StreamLease.verify(id, () -> {
+            WowzaLiveStream.start(id, isStarted, onFail, null);
+        }, (Long until) -> {
+            leasedElsewhere(id, until);
+            onLost.run();
+        }, onFail);
+    }
+
+    /**
+     * Remembers that the given stream is leased by another device (or it
+     * cannot be leased) until the given time.
+     */
+    private synchronized void leasedElsewhere(String id, long until) {
+        inUse.remove(id);
+        freeList.remove(id);
+        leasedElsewhere.put(id, until);
+    }
+
+    /**
+     * Returns true if the given stream is leased by another device, forgetting
+     * the expired leases.
+     */
+    private synchronized boolean isLeasedElsewhere(String id) {
+        Long until = leasedElsewhere.get(id);
+        if (until == null) {
+            return false;
+        }
+        if (until < WowzaClock.now()) {
+            leasedElsewhere.remove(id);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Passes the available streams to the waiting acquire(...) calls; if no
+     * stream will become available (the pool is not refreshing and no stream
+     * is being created), the remaining ones fail.
+     */
+    private void serveWaiting() {
+        List<Waiter> served = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<Waiter> failed = new ArrayList<>();
+        synchronized (this) {
+            while (!waiting.isEmpty() && !freeList.isEmpty()) {
+                String id = freeList.removeFirst();
+                inUse.add(id);
+                served.add(waiting.removeFirst());
+                ids.add(id);
+            }
+            if (!waiting.isEmpty() && !refreshing && creating == 0) {
+                failed.addAll(waiting);
+                waiting.clear();
+            }
+        }
+        for (int i = 0; i < served.size(); i++) {
+            lease(ids.get(i), served.get(i).onComplete, served.get(i).onFail);
+        }
+        if (!failed.isEmpty() && isVerboseLog()) {
+            WowzaLogShipper.log("WowzaStreamPool.acquire -> No stopped streams available in the pool", Log.ERROR);
+        }
+        for (Waiter waiter : failed) {
+            waiter.onFail.run();
+        }
+    }
+
+    /**
+     * <p>
+     * Keeps up to the given number of started streams ready for
+     * acquireStarted(...). Transcoding charges accrue for started streams even
+     * if they aren't actively streaming content, so every started stream that
+     * is not acquired within the idleTtl is stopped and moved back to the
+     * stopped streams: the idle cost is at most size * idleTtl of transcoding
+     * time for every refill. The tier is filled immediately by this method,
+     * and then it's refilled only after an acquisition, so an unused tier
+     * doesn't accrue charges after the idleTtl.</p>
+     * <p>
+     * If the leases are enabled (see setLeaseDuration), the streams of the
+     * tier are leased before being started, and the streams leased by other
+     * devices are skipped.</p>
+     *
+     * @param size max number of started streams, 0 to disable the tier
+     * @param idleTtl in milliseconds, after which an idle started stream is
+     * stopped; it must be &gt; 0 if the size is &gt; 0
+     */
+    public void setStartedTier(int size, long idleTtl) {
+        if (size < 0 || (size > 0 && idleTtl <= 0)) {
+            throw new IllegalArgumentException("WowzaStreamPool.setStartedTier -> size must be >= 0 and idleTtl must be > 0");
+        }
+        List<String> toBeStopped = new ArrayList<>();
+        synchronized (this) {
+            startedTierSize = size;
+            startedIdleTtl = idleTtl;
+            while (startedList.size() > size) {
+                toBeStopped.add(startedList.removeLast());
+            }
+        }
+        for (String id : toBeStopped) {
+            stopIdleStream(id);
+        }
+        fillStartedTier();
+    }
+
+    /**
+     * (Async) Gets a started stream, ready to ingest: if the started tier has
+     * a stream, the onComplete callback is invoked immediately (hit),
+     * otherwise a stopped stream is acquired and started (miss). The returned
+     * stream is considered in use until it's released.
+     *
+     * @param onComplete callback invoked on success, the passed value is the id
+     * of a started stream of the pool
+     * @param onFail callback invoked on failure
+     */
+    public void acquireStarted(OnComplete<String> onComplete, Runnable onFail) {
+        String id = null;
+        WowzaScheduler.Task idleStop = null;
+        synchronized (this) {
+            if (!startedList.isEmpty()) {
+                id = startedList.removeFirst();
+                idleStop = idleStops.remove(id);
+                standby.remove(id);
+                inUse.add(id);
+                startedHits++;
+            } else {
+                startedMisses++;
+            }
+        }
+        if (idleStop != null) {
+            idleStop.cancel();
+        }
+        if (id != null) {
+            if (isVerboseLog()) {
+                Log.p("WowzaStreamPool.acquireStarted -> Got the started stream " + id + " from the started tier", Log.DEBUG);
+            }
+            onComplete.completed(id);
+            fillStartedTier();
+            return;
+        }
+
+        if (isVerboseLog()) {
+            Log.p("WowzaStreamPool.acquireStarted -> No started streams available, starting a stopped stream", Log.DEBUG);
+        }
+        startStopped(onComplete, onFail);
+    }
+
+    /**
+     * Acquires a stopped stream and starts it.
+     */
+    private void startStopped(OnComplete<String> onComplete, Runnable onFail) {
+        acquire(stoppedId -> {
+            startLeased(stoppedId, onComplete, () -> {
+                release(stoppedId);
+                onFail.run();
+            }, () -> {
+                // another device took the stream, we try the next one
+                startStopped(onComplete, onFail);
+            });
+            fillStartedTier();
+        }, onFail);
+    }
+
+    /**
+     * Number of acquireStarted(...) calls served by the started tier
+     *
+     * @return hits
+     */
+    public synchronized int getStartedHits() {
+        return startedHits;
+    }
+
+    /**
+     * Number of acquireStarted(...) calls that had to start a stream
+     *
+     * @return misses
+     */
+    public synchronized int getStartedMisses() {
+        return startedMisses;
+    }
+
+    /**
+     * Ratio of acquireStarted(...) calls served by the started tier
+     *
+     * @return a value between 0 and 1, or 0 if acquireStarted was never called
+     */
+    public synchronized double getStartedHitRatio() {
+        int total = startedHits + startedMisses;
+        return total == 0 ? 0 : (double) startedHits / total;
+    }
+
+    /**
+     * Number of started streams ready to be acquired
+     *
+     * @return available started streams
+     */
+    public synchronized int getAvailableStartedCount() {
+        return startedList.size();
+    }
+
+    /**
+     * Starts stopped streams of the pool until the started tier is full. If
+     * the leases are enabled, every stream is leased before starting it, for
+     * the lease duration plus the idle TTL.
+     */
+    private void fillStartedTier() {
+        List<String> toBeStarted = new ArrayList<>();
+        long duration;
+        synchronized (this) {
+            while (startedList.size() + startingCount < startedTierSize && !freeList.isEmpty()) {
+                String id = freeList.removeFirst();
+                standby.add(id);
+                toBeStarted.add(id);
+                startingCount++;
+            }
+            duration = leaseDuration > 0 ? leaseDuration + startedIdleTtl : 0;
+        }
+        for (String id : toBeStarted) {
+            if (duration > 0) {
+                StreamLease.acquire(id, duration, leasedId -> {
+                    startStandby(id);
+                }, (Long until) -> {
+                    // another device got this stream, we try the next one
+                    synchronized (this) {
+                        startingCount--;
+                        standby.remove(id);
+                    }
+                    leasedElsewhere(id, until);
+                    fillStartedTier();
+                }, () -> {
+                    standbyFailed(id);
+                });
+            } else {
+                startStandby(id);
+            }
+        }
+    }
+
+    /**
+     * Starts a stream for the started tier.
+     */
+    private void startStandby(String id) {
+        WowzaLiveStream.start(id, startedId -> {
+            long ttl;
+            synchronized (this) {
+                startingCount--;
+                startedList.add(startedId);
+                ttl = startedIdleTtl;
+            }
+            WowzaScheduler.Task idleStop = WowzaScheduler.schedule("WowzaStreamPool.idleStop", () -> {
+                boolean idle;
+                synchronized (this) {
+                    idle = startedList.remove(startedId);
+                    idleStops.remove(startedId);
+                }
+                if (idle) {
+                    stopIdleStream(startedId);
+                }
+            }, ttl);
+            synchronized (this) {
+                idleStops.put(startedId, idleStop);
+            }
+            if (isVerboseLog()) {
+                Log.p("WowzaStreamPool -> The stream " + startedId + " is started and ready in the started tier", Log.DEBUG);
+            }
+        }, () -> {
+            standbyFailed(id);
+        }, null);
+    }
+
+    /**
+     * Moves a stream that could not be started for the started tier back to
+     * the stopped streams, removing its lease (if it's owned by this app
+     * installation), otherwise the other devices would skip it until the
+     * lease expires.
+     */
+    private void standbyFailed(String id) {
+        boolean leased;
+        synchronized (this) {
+            startingCount--;
+            standby.remove(id);
+            if (!freeList.contains(id) && !inUse.contains(id)) {
+                freeList.add(id);
+            }
+            leased = leaseDuration > 0;
+        }
+        if (leased) {
+            StreamLease.release(id);
+        }
+        if (isVerboseLog()) {
+            WowzaLogShipper.log("WowzaStreamPool -> Failed to start the stream " + id + " for the started tier", Log.ERROR);
+        }
+    }
+
+    /**
+     * Stops an idle stream of the started tier, moving it back to the stopped
+     * streams.
+     */
+    private void stopIdleStream(String id) {
+        WowzaLiveStream.stop(id, stoppedId -> {
+            boolean leased;
+            synchronized (this) {
+                standby.remove(stoppedId);
+                if (!freeList.contains(stoppedId)) {
+                    freeList.add(stoppedId);
+                }
+                leased = leaseDuration > 0;
+            }
+            if (leased) {
+                StreamLease.release(stoppedId);
+            }
+            if (isVerboseLog()) {
+                Log.p("WowzaStreamPool -> Stopped the idle started stream " + stoppedId, Log.DEBUG);
+            }
+        }, () -> {
+            synchronized (this) {
+                standby.remove(id);
+            }
+            if (isVerboseLog()) {
+                WowzaLogShipper.log("WowzaStreamPool -> Failed to stop the idle started stream " + id, Log.ERROR);
+            }
+        });
+    }
+
+    /**
+     * Gives back to the pool a stream previously returned by acquire, removing
+     * its lease; the stream should be stopped.
+     *
+     * @param id of the stream
+     */
+    public void release(String id) {
+        boolean leased;
+        synchronized (this) {
+            if (inUse.remove(id) && !freeList.contains(id)) {
+                freeList.add(id);
+            }
+            leased = leaseDuration > 0;
+        }
+        if (leased) {
+            StreamLease.release(id);
+        }
+    }
+
+    /**
+     * Number of stopped streams ready to be acquired
+     *
+     * @return available streams
+     */
+    public synchronized int getAvailableCount() {
+        return freeList.size();
+    }
+
+    /**
+     * Number of streams acquired and not released yet
+     *
+     * @return streams in use
+     */
+    public synchronized int getInUseCount() {
+        return inUse.size();
+    }
+
+    /**
+     * Creates new streams in background if the available streams are below
+     * the threshold. It's the only place where the pool creates streams, so
+     * the creation quota of the account is not spent twice.
+     */
+    private void replenish() {
+        int toBeCreated;
+        int firstNumber;
+        synchronized (this) {
+            int available = freeList.size() + creating;
+            if (available * 100 / targetSize >= threshold) {
+                return;
+            }
+            toBeCreated = targetSize - available;
+            firstNumber = poolSize + creating + 1;
+            creating += toBeCreated;
+        }
+        for (int i = 0; i < toBeCreated; i++) {
+            // every stream has its own copy, the default params are shared
+            WowzaLiveStreamParams params = defaultParams != null ? defaultParams.copy() : new WowzaLiveStreamParams();
+            params.name.set("Stream-" + (firstNumber + i));
+            new WowzaLiveStream().create(params, newStream -> {
+                synchronized (this) {
+                    creating--;
+                    poolSize++;
+                    freeList.add(newStream.getId());
+                }
+                if (isVerboseLog()) {
+                    Log.p("WowzaStreamPool -> Created new stream with name " + newStream.getName() + " and id " + newStream.getId(), Log.DEBUG);
+                }
+                serveWaiting();
+            }, () -> {
+                synchronized (this) {
+                    creating--;
+                }
+                if (isVerboseLog()) {
+                    WowzaLogShipper.log("WowzaStreamPool -> Failed to create new stream", Log.ERROR);
+                }
+                serveWaiting();
+            });
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * <p>
+ * Bytes allocated per signature by the portable WowzaHmacSha256 and by the
+ * JavaSE HMAC_SHA256Impl, measured with the ThreadMXBean of the current
+ * thread. The returned String and its array are included.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with CodenameOne.jar, the compiled
+ * CN1Lib and the compiled JavaSE native sources in the classpath (without
+ * the latter, HMAC_SHA256Impl is skipped):</p>
+ * <pre>
+ * java -cp lib/CodenameOne.jar:build/classes:native/javase/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaHmacAllocationBenchmark
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaHmacAllocationBenchmark {
+
+    private static final int WARM_UP = 20000;
+    private static final int ITERATIONS = 100000;
+    private static final String KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final String MESSAGE = "1570000000:/api/v1.3/live_streams/abcdefgh/state:" + KEY;
+
+    public static void main(String[] args) throws Exception {
+        WowzaHmacSha256 portable = new WowzaHmacSha256();
+        report("WowzaHmacSha256", portable::sign);
+        try {
+            HMAC_SHA256 javase = (HMAC_SHA256) Class.forName("net.informaticalibera.cn1libs.wowza.HMAC_SHA256Impl").getDeclaredConstructor().newInstance();
+            report("HMAC_SHA256Impl", javase::HMAC_sha256);
+        } catch (ClassNotFoundException ex) {
+            System.out.println("HMAC_SHA256Impl is not in the classpath, it will be skipped");
+        }
+    }
+
+    private interface Sign {
+
+        String sign(String key, String message);
+    }
+
+    private static void report(String name, Sign sign) {
+        run(sign, WARM_UP);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        run(sign, ITERATIONS);
+        bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.println(name + ": " + bytes / ITERATIONS + " bytes allocated per signature");
+    }
+
+    private static void run(Sign sign, int iterations) {
+        int hash = 0;
+        for (int i = 0; i < iterations; i++) {
+            hash += sign.sign(KEY, MESSAGE).hashCode();
+        }
+        if (hash == 42) {
+            // keeps the results alive
+            System.out.println();
+        }
+    }
+
+}
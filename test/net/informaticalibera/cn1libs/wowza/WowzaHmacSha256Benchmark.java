@@ -0,0 +1,80 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * Throughput of the portable WowzaHmacSha256 against javax.crypto.Mac
+ * (initialized once, as in the JavaSE HMAC_SHA256Impl), with messages of
+ * increasing size.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with the compiled CN1Lib in the
+ * classpath:</p>
+ * <pre>
+ * java -cp build/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaHmacSha256Benchmark
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaHmacSha256Benchmark {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final long DURATION = 1000000000L;
+
+    public static void main(String[] args) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        WowzaHmacSha256 portable = new WowzaHmacSha256();
+
+        for (int size : new int[]{64, 256, 1024, 16384}) {
+            StringBuilder message = new StringBuilder(size);
+            for (int i = 0; i < size; i++) {
+                message.append((char) ('a' + i % 26));
+            }
+            String s = message.toString();
+            // warm-up
+            measure(() -> portable.sign(KEY, s), DURATION / 2);
+            measure(() -> mac.doFinal(s.getBytes(StandardCharsets.UTF_8)), DURATION / 2);
+
+            double portableRate = measure(() -> portable.sign(KEY, s), DURATION);
+            double macRate = measure(() -> mac.doFinal(s.getBytes(StandardCharsets.UTF_8)), DURATION);
+            System.out.println(size + " bytes: WowzaHmacSha256 " + format(portableRate, size) + ", javax.crypto.Mac " + format(macRate, size));
+        }
+    }
+
+    /**
+     * Signatures per second.
+     */
+    private static double measure(Runnable sign, long duration) {
+        long count = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 100; i++) {
+                sign.run();
+            }
+            count += 100;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < duration);
+        return count * 1e9 / elapsed;
+    }
+
+    private static String format(double rate, int size) {
+        return Math.round(rate) + " signatures/s (" + Math.round(rate * size / (1024 * 1024)) + " MB/s)";
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * Test of WowzaHmacSha256 with the HMAC-SHA256 vectors of RFC 4231 (test
+ * cases 1-7, the 5th is truncated to 128 bits), and of its UTF-8 encoding
+ * of String keys and messages against javax.crypto.Mac.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with the compiled CN1Lib in the
+ * classpath, it throws an AssertionError on failure:</p>
+ * <pre>
+ * java -cp build/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaHmacSha256Test
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaHmacSha256Test {
+
+    public static void main(String[] args) throws Exception {
+        WowzaHmacSha256 hmac = new WowzaHmacSha256();
+
+        // Test Case 1
+        check(hmac, 1, repeat(0x0b, 20), ascii("Hi There"),
+                "b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7");
+        // Test Case 2: key shorter than the length of the HMAC output
+        check(hmac, 2, ascii("Jefe"), ascii("what do ya want for nothing?"),
+                "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+        // Test Case 3: combined length of key and data larger than 64 bytes
+        check(hmac, 3, repeat(0xaa, 20), repeat(0xdd, 50),
+                "773ea91e36800e46854db8ebd09181a72959098b3ef8c122d9635514ced565fe");
+        // Test Case 4
+        check(hmac, 4, hex("0102030405060708090a0b0c0d0e0f10111213141516171819"), repeat(0xcd, 50),
+                "82558a389a443c0ea4cc819899f2083a85f0faa3e578f8077a2e3ff46729665b");
+        // Test Case 5: truncation of the output to 128 bits
+        check(hmac, 5, repeat(0x0c, 20), ascii("Test With Truncation"),
+                "a3b6167473100ee06e0c796c2955552b");
+        // Test Case 6: key larger than the block size
+        check(hmac, 6, repeat(0xaa, 131), ascii("Test Using Larger Than Block-Size Key - Hash Key First"),
+                "60e431591ee0b67f0d8a26aacbf5b77f8e0bc6213728c5140546040f0ee37f54");
+        // Test Case 7: key and data larger than the block size
+        check(hmac, 7, repeat(0xaa, 131), ascii("This is a test using a larger than block-size key and a larger than block-size data."
+                + " The key needs to be hashed before being used by the HMAC algorithm."),
+                "9b09ffa71b942fcb27635fbcd5b0e944bfdc63644f0713938a7f51535c3a35e2");
+
+        // String keys and messages, including the key cache and the UTF-8 encoding
+        check(hmac, "Jefe", "what do ya want for nothing?");
+        check(hmac, "Jefe", "");
+        check(hmac, "chiave segreta \u00e0\u00e8\u00ec\u00f2\u00f9", "messaggio non ASCII: \u20ac \u4e2d\u6587 \ud83d\ude00");
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            check(hmac, randomString(random, 1 + random.nextInt(100)), randomString(random, random.nextInt(300)));
+        }
+        System.out.println("WowzaHmacSha256Test -> all the tests passed");
+    }
+
+    private static void check(WowzaHmacSha256 hmac, int testCase, byte[] key, byte[] data, String expected) {
+        String actual = hmac.sign(key, data).substring(0, expected.length());
+        if (!expected.equals(actual)) {
+            throw new AssertionError("RFC 4231 Test Case " + testCase + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    private static void check(WowzaHmacSha256 hmac, String key, String message) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = toHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+        String actual = hmac.sign(key, message);
+        if (!expected.equals(actual)) {
+            throw new AssertionError("Key \"" + key + "\", message \"" + message + "\": expected " + expected + ", got " + actual);
+        }
+    }
+
+    /**
+     * Random string with ASCII, BMP and supplementary characters.
+     */
+    private static String randomString(Random random, int length) {
+        StringBuilder s = new StringBuilder(length);
+        while (s.length() < length) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    s.append((char) (0x20 + random.nextInt(0x5f)));
+                    break;
+                case 1:
+                    s.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 2:
+                    s.append((char) (0x800 + random.nextInt(0xd000)));
+                    break;
+                default:
+                    s.appendCodePoint(0x10000 + random.nextInt(0x10000));
+            }
+        }
+        return s.toString();
+    }
+
+    private static byte[] repeat(int value, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] hex(String s) {
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder s = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            s.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.codename1.io.JSONParser;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Benchmark of the streaming WowzaJsonDecoder.StreamList against the Map
+ * based parsing (JSONParser.parseJSON) of large "live_streams" lists: time
+ * and allocated bytes per list. Both results are checked to be equal.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with CodenameOne.jar and the compiled
+ * CN1Lib in the classpath, optionally passing the number of streams:</p>
+ * <pre>
+ * java -cp lib/CodenameOne.jar:build/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaJsonDecoderBenchmark 1000
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaJsonDecoderBenchmark {
+
+    private static final int WARM_UP = 50;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? new int[]{Integer.parseInt(args[0])} : new int[]{100, 1000, 5000};
+        for (int size : sizes) {
+            String json = createList(size);
+            List<WowzaStreamInfo> decoded = decode(json);
+            List<WowzaStreamInfo> mapped = parseMap(json);
+            check(decoded, mapped, size);
+
+            for (int i = 0; i < WARM_UP; i++) {
+                decode(json);
+                parseMap(json);
+            }
+            long[] decoder = measure(() -> decode(json));
+            long[] map = measure(() -> parseMap(json));
+            System.out.println(size + " streams (" + json.length() / 1024 + " KB): decoder "
+                    + decoder[0] / 1000 + " us, " + decoder[1] / 1024 + " KB allocated; map "
+                    + map[0] / 1000 + " us, " + map[1] / 1024 + " KB allocated");
+        }
+    }
+
+    private interface Parse {
+
+        void run() throws IOException;
+    }
+
+    /**
+     * Average time (ns) and allocated bytes of a parse.
+     */
+    private static long[] measure(Parse parse) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse.run();
+        }
+        time = System.nanoTime() - time;
+        bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+        return new long[]{time / ITERATIONS, bytes / ITERATIONS};
+    }
+
+    private static List<WowzaStreamInfo> decode(String json) throws IOException {
+        return new WowzaJsonDecoder.StreamList().parse(new StringReader(json));
+    }
+
+    /**
+     * The same result, from the Map representation of the json.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<WowzaStreamInfo> parseMap(String json) throws IOException {
+        Map<String, Object> root = new JSONParser().parseJSON(new StringReader(json));
+        List<Map<String, Object>> list = (List<Map<String, Object>>) root.get("live_streams");
+        List<WowzaStreamInfo> streams = new ArrayList<>(list.size());
+        for (Map<String, Object> stream : list) {
+            streams.add(new WowzaStreamInfo((String) stream.get("id"), (String) stream.get("name"), (String) stream.get("state"),
+                    (String) stream.get("connection_code"), (String) stream.get("broadcast_location")));
+        }
+        return streams;
+    }
+
+    private static void check(List<WowzaStreamInfo> decoded, List<WowzaStreamInfo> mapped, int size) {
+        if (decoded.size() != size || mapped.size() != size) {
+            throw new AssertionError("Expected " + size + " streams, decoded " + decoded.size() + ", mapped " + mapped.size());
+        }
+        for (int i = 0; i < size; i++) {
+            WowzaStreamInfo a = decoded.get(i);
+            WowzaStreamInfo b = mapped.get(i);
+            if (!a.toString().equals(b.toString()) || !a.getConnection_code().equals(b.getConnection_code())) {
+                throw new AssertionError("Stream " + i + " differs: " + a + " != " + b);
+            }
+        }
+    }
+
+    /**
+     * A "live_streams" response with the fields returned by the Wowza
+     * Streaming Cloud, including the ones that are not decoded.
+     */
+    static String createList(int size) {
+        StringBuilder json = new StringBuilder(size * 400);
+        json.append("{\"live_streams\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"stream").append(i)
+                    .append("\",\"name\":\"Stream ").append(i)
+                    .append("\",\"state\":\"").append(i % 3 == 0 ? "started" : "stopped")
+                    .append("\",\"connection_code\":\"").append(100000 + i)
+                    .append("\",\"broadcast_location\":\"eu_germany\"")
+                    .append(",\"aspect_ratio_width\":1280,\"aspect_ratio_height\":720")
+                    .append(",\"billing_mode\":\"pay_as_you_go\",\"encoder\":\"other_rtmp\"")
+                    .append(",\"low_latency\":false,\"recording\":false")
+                    .append(",\"source_connection_information\":{\"primary_server\":\"rtmp://example.entrypoint.cloud.wowza.com/app-")
+                    .append(i).append("\",\"host_port\":1935,\"username\":\"client").append(i).append("\"}")
+                    .append(",\"created_at\":\"2019-10-01T10:00:00.000Z\",\"updated_at\":\"2019-10-01T10:00:00.000Z\"}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+}
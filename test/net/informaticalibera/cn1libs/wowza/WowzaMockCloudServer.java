@@ -0,0 +1,554 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Mock of the Wowza Streaming Cloud REST API, for offline load tests of an
+ * app running in the Simulator. It emulates the endpoints
+ * used by this CN1Lib: "live_streams" (list and creation), "state",
+ * "start", "stop", "stats", "thumbnail_url" and "transcoders" (read and
+ * update), with configurable latencies, state transition delays and error
+ * injection. The GET responses have an ETag and honor If-None-Match.</p>
+ * <p>
+ * Usage:</p>
+ * <pre>
+ * WowzaMockCloudServer server = new WowzaMockCloudServer(8089, "/api/v1.3/");
+ * server.addStreams(50);
+ * server.setLatency(50, 200);
+ * server.start();
+ * // in the app (Simulator):
+ * WowzaLiveStream.setEndpoint("http://localhost:8089", "/api/v1.3/");
+ * </pre>
+ * <p>
+ * It's not part of the CN1Lib. Run it standalone with its main method, the
+ * arguments are the port (default 8089) and the number of stopped streams to
+ * create (default 20):</p>
+ * <pre>
+ * java -cp build/test/classes net.informaticalibera.cn1libs.wowza.WowzaMockCloudServer 8089 50
+ * </pre>
+ * <p>
+ * or embed it in a JavaSE test harness, with build/test/classes in the
+ * classpath.</p>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaMockCloudServer {
+
+    private static final Logger LOGGER = Logger.getLogger(WowzaMockCloudServer.class.getName());
+    private static final Pattern STREAM_PATH = Pattern.compile("live_streams/([^/]+)(/(state|start|stop|stats|thumbnail_url))?");
+    private static final Pattern TRANSCODER_PATH = Pattern.compile("transcoders/([^/]+)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final String apiVersion;
+    private final Random random = new Random();
+    private final Map<String, MockStream> streams = new LinkedHashMap<>();
+    private final Map<String, Integer> requestCounts = new HashMap<>();
+    private int nextId = 1;
+
+    private volatile long minLatency = 0;
+    private volatile long maxLatency = 0;
+    private volatile long startDelay = 5000;
+    private volatile double errorProbability = 0;
+    private volatile int errorCode = 500;
+    private volatile boolean listIncludesStates = false;
+
+    /**
+     * A live stream of the mock account.
+     */
+    private static class MockStream {
+
+        private final String id;
+        private final String name;
+        private final String location;
+        private final String connectionCode;
+        private String state;
+        private String nextState = null;
+        private long transitionTime = 0;
+        private String description = null;
+
+        private MockStream(String id, String name, String location, String connectionCode, String state) {
+            this.id = id;
+            this.name = name;
+            this.location = location;
+            this.connectionCode = connectionCode;
+            this.state = state;
+        }
+
+        private String getState() {
+            if (nextState != null && System.currentTimeMillis() >= transitionTime) {
+                state = nextState;
+                nextState = null;
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Creates the server, that listens on all the interfaces.
+     *
+     * @param port of the server, 0 to choose a free port
+     * @param apiVersion path of the api version, like "/api/v1.3/"
+     * @throws IOException if the port cannot be used
+     */
+    public WowzaMockCloudServer(int port, String apiVersion) throws IOException {
+        this.apiVersion = apiVersion;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext(apiVersion, (HttpExchange exchange) -> {
+            try {
+                handle(exchange);
+            } catch (Exception ex) {
+                LOGGER.log(Level.SEVERE, "Mock server exception", ex);
+                send(exchange, 500, error(500, "Mock server exception: " + ex));
+            }
+        });
+    }
+
+    /**
+     * Starts the server.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Port of the server
+     *
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Base url, to be passed to WowzaLiveStream.setEndpoint
+     *
+     * @return url
+     */
+    public String getUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    /**
+     * Adds a stream to the mock account.
+     *
+     * @param name of the stream
+     * @param state of the stream, like "stopped" or "started"
+     * @return id of the stream
+     */
+    public synchronized String addStream(String name, String state) {
+        String id = "mock" + (nextId++);
+        streams.put(id, new MockStream(id, name, "eu_germany", connectionCode(id), state));
+        return id;
+    }
+
+    /**
+     * Adds the given number of stopped streams to the mock account.
+     *
+     * @param count of the new streams
+     */
+    public synchronized void addStreams(int count) {
+        for (int i = 0; i < count; i++) {
+            addStream("Stream-" + (streams.size() + 1), "stopped");
+        }
+    }
+
+    /**
+     * Sets the latency of every response: a random value between min and max.
+     *
+     * @param min in milliseconds
+     * @param max in milliseconds
+     */
+    public void setLatency(long min, long max) {
+        this.minLatency = min;
+        this.maxLatency = Math.max(min, max);
+    }
+
+    /**
+     * Sets the time spent by a stream in the "starting" state (default 5
+     * seconds).
+     *
+     * @param startDelay in milliseconds
+     */
+    public void setStartDelay(long startDelay) {
+        this.startDelay = startDelay;
+    }
+
+    /**
+     * Makes the given fraction of the requests fail with the given response
+     * code, for example 500 or 429.
+     *
+     * @param probability between 0 (no errors) and 1 (all the requests fail)
+     * @param code of the failed responses
+     */
+    public void setErrorInjection(double probability, int code) {
+        this.errorProbability = probability;
+        this.errorCode = code;
+    }
+
+    /**
+     * Includes the state in the "live_streams" list (default false, like the
+     * real API version 1.3).
+     *
+     * @param listIncludesStates true to include the states
+     */
+    public void setListIncludesStates(boolean listIncludesStates) {
+        this.listIncludesStates = listIncludesStates;
+    }
+
+    /**
+     * Current state of the given stream
+     *
+     * @param id of the stream
+     * @return state, or null if the stream doesn't exist
+     */
+    public synchronized String getState(String id) {
+        MockStream stream = streams.get(id);
+        return stream != null ? stream.getState() : null;
+    }
+
+    /**
+     * Total number of received requests
+     *
+     * @return count
+     */
+    public synchronized int getRequestCount() {
+        int total = 0;
+        for (int count : requestCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Number of received requests of the given endpoint
+     *
+     * @param endpoint like "GET live_streams/{id}/state" or "PUT
+     * live_streams/{id}/start"
+     * @return count
+     */
+    public synchronized int getRequestCount(String endpoint) {
+        Integer count = requestCounts.get(endpoint);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Number of received requests of every endpoint
+     *
+     * @return a copy of the counters
+     */
+    public synchronized Map<String, Integer> getRequestCounts() {
+        return new LinkedHashMap<>(requestCounts);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException, InterruptedException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring(apiVersion.length());
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String body = readBody(exchange.getRequestBody());
+
+        if (maxLatency > 0) {
+            Thread.sleep(minLatency + (long) (random.nextDouble() * (maxLatency - minLatency)));
+        }
+
+        if ("HEAD".equals(method)) {
+            count("HEAD " + path);
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        if (exchange.getRequestHeaders().getFirst("wsc-access-key") == null) {
+            send(exchange, 401, error(401, "Missing wsc-access-key header"));
+            return;
+        }
+
+        Matcher streamMatcher = STREAM_PATH.matcher(path);
+        Matcher transcoderMatcher = TRANSCODER_PATH.matcher(path);
+        String endpoint;
+        String id = null;
+        if ("live_streams".equals(path)) {
+            endpoint = method + " live_streams";
+        } else if (streamMatcher.matches()) {
+            id = streamMatcher.group(1);
+            endpoint = method + " live_streams/{id}" + (streamMatcher.group(2) != null ? streamMatcher.group(2) : "");
+        } else if (transcoderMatcher.matches()) {
+            id = transcoderMatcher.group(1);
+            endpoint = method + " transcoders/{id}";
+        } else {
+            endpoint = method + " " + path;
+        }
+        count(endpoint);
+
+        if (errorProbability > 0 && random.nextDouble() < errorProbability) {
+            if (errorCode == 429) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            send(exchange, errorCode, error(errorCode, "Injected error"));
+            return;
+        }
+
+        int code = 200;
+        String response;
+        synchronized (this) {
+            MockStream stream = id != null ? streams.get(id) : null;
+            if (id != null && stream == null) {
+                send(exchange, 404, error(404, "Record not found"));
+                return;
+            }
+            switch (endpoint) {
+                case "GET live_streams":
+                    response = list(query);
+                    break;
+                case "POST live_streams":
+                    String newId = "mock" + (nextId++);
+                    stream = new MockStream(newId, field(body, "name", "Stream"), field(body, "broadcast_location", "eu_germany"), connectionCode(newId), "stopped");
+                    streams.put(newId, stream);
+                    code = 201;
+                    response = liveStream(stream, true);
+                    break;
+                case "GET live_streams/{id}":
+                    response = liveStream(stream, true);
+                    break;
+                case "GET live_streams/{id}/state":
+                    response = "{\"live_stream\":{\"state\":" + json(stream.getState()) + "}}";
+                    break;
+                case "PUT live_streams/{id}/start":
+                    if (!"stopped".equals(stream.getState())) {
+                        send(exchange, 422, error(422, "The live stream is not stopped"));
+                        return;
+                    }
+                    stream.state = "starting";
+                    stream.nextState = "started";
+                    stream.transitionTime = System.currentTimeMillis() + startDelay;
+                    response = "{\"live_stream\":{\"state\":\"starting\"}}";
+                    break;
+                case "PUT live_streams/{id}/stop":
+                    stream.state = "stopped";
+                    stream.nextState = null;
+                    response = "{\"live_stream\":{\"state\":\"stopped\"}}";
+                    break;
+                case "GET live_streams/{id}/stats":
+                    response = "{\"live_stream\":{\"connected\":{\"value\":" + json("started".equals(stream.getState()) ? "Yes" : "No") + ",\"status\":\"normal\",\"text\":\"\"}}}";
+                    break;
+                case "GET live_streams/{id}/thumbnail_url":
+                    response = "{\"live_stream\":{\"thumbnail_url\":" + json("started".equals(stream.getState()) ? getUrl() + "/thumbnails/" + id + ".jpg" : null) + "}}";
+                    break;
+                case "GET transcoders/{id}":
+                    response = transcoder(stream);
+                    break;
+                case "PATCH transcoders/{id}":
+                    stream.description = field(body, "description", stream.description);
+                    response = transcoder(stream);
+                    break;
+                default:
+                    send(exchange, 404, error(404, "Unknown endpoint " + endpoint));
+                    return;
+            }
+        }
+
+        if ("GET".equals(method)) {
+            String etag = "\"" + Integer.toHexString(response.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        send(exchange, code, response);
+    }
+
+    private String list(Map<String, String> query) {
+        int perPage = query.containsKey("per_page") ? Integer.parseInt(query.get("per_page")) : 1000;
+        int page = query.containsKey("page") ? Integer.parseInt(query.get("page")) : 1;
+        List<MockStream> all = new ArrayList<>(streams.values());
+        int from = Math.min(all.size(), (page - 1) * perPage);
+        int to = Math.min(all.size(), from + perPage);
+        StringBuilder sb = new StringBuilder("{\"live_streams\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append(',');
+            }
+            sb.append(liveStreamObject(all.get(i), listIncludesStates));
+        }
+        sb.append("],\"pagination\":{\"page\":").append(page)
+                .append(",\"per_page\":").append(perPage)
+                .append(",\"total_records\":").append(all.size())
+                .append(",\"total_pages\":").append((all.size() + perPage - 1) / perPage)
+                .append("}}");
+        return sb.toString();
+    }
+
+    private static String liveStream(MockStream stream, boolean includeState) {
+        return "{\"live_stream\":" + liveStreamObject(stream, includeState) + "}";
+    }
+
+    private static String liveStreamObject(MockStream stream, boolean includeState) {
+        return "{\"id\":" + json(stream.id)
+                + ",\"name\":" + json(stream.name)
+                + (includeState ? ",\"state\":" + json(stream.getState()) : "")
+                + ",\"connection_code\":" + json(stream.connectionCode)
+                + ",\"broadcast_location\":" + json(stream.location)
+                + "}";
+    }
+
+    private static String transcoder(MockStream stream) {
+        return "{\"transcoder\":{\"id\":" + json(stream.id)
+                + ",\"name\":" + json(stream.name)
+                + ",\"state\":" + json(stream.getState())
+                + ",\"domain_name\":\"localhost\""
+                + ",\"source_port\":1935"
+                + ",\"application_name\":" + json("app-" + stream.id)
+                + ",\"stream_name\":" + json("stream-" + stream.id)
+                + ",\"username\":\"mock\""
+                + ",\"password\":\"mock\""
+                + ",\"description\":" + json(stream.description)
+                + "}}";
+    }
+
+    private static String error(int code, String title) {
+        return "{\"meta\":{\"status\":" + code + ",\"code\":\"ERR-" + code + "-MOCK\",\"title\":" + json(title) + "}}";
+    }
+
+    private static String connectionCode(String id) {
+        String code = Integer.toString(Math.abs(id.hashCode()), 36) + "000000";
+        return code.substring(0, 6);
+    }
+
+    /**
+     * Reads a string field from a json body, without a full json parser.
+     */
+    private static String field(String body, String name, String defaultValue) {
+        Matcher matcher = Pattern.compile("\"" + name + "\"\\s*:\\s*(null|\"((\\\\.|[^\"\\\\])*)\")").matcher(body);
+        if (!matcher.find()) {
+            return defaultValue;
+        }
+        return matcher.group(2) != null ? matcher.group(2).replace("\\\"", "\"").replace("\\\\", "\\") : null;
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private synchronized void count(String endpoint) {
+        Integer count = requestCounts.get(endpoint);
+        requestCounts.put(endpoint, count != null ? count + 1 : 1);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int separator = param.indexOf('=');
+                if (separator > 0) {
+                    params.put(param.substring(0, separator), param.substring(separator + 1));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    /**
+     * Runs the mock server standalone.
+     *
+     * @param args port (default 8089) and number of stopped streams (default
+     * 20)
+     * @throws IOException if the port cannot be used
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        WowzaMockCloudServer server = new WowzaMockCloudServer(port, "/api/v1.3/");
+        server.addStreams(count);
+        server.start();
+        LOGGER.info("Mock Wowza Streaming Cloud API listening on " + server.getUrl() + "/api/v1.3/ with " + count + " streams");
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * Before/after benchmark of the signature of a request: a new Mac created
+ * and initialized for every call (the implementation before the key
+ * caching), the JavaSE HMAC_SHA256Impl, that keeps the Mac of the last key,
+ * and the portable WowzaHmacSha256. All the signatures are checked to be
+ * equal.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with CodenameOne.jar, the compiled
+ * CN1Lib and the compiled JavaSE native sources in the classpath (without
+ * the latter, HMAC_SHA256Impl is skipped):</p>
+ * <pre>
+ * java -cp lib/CodenameOne.jar:build/classes:native/javase/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaSignerBenchmark
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaSignerBenchmark {
+
+    private static final int WARM_UP = 20000;
+    private static final int ITERATIONS = 200000;
+    private static final String KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    public static void main(String[] args) throws Exception {
+        HMAC_SHA256 javase = null;
+        try {
+            javase = (HMAC_SHA256) Class.forName("net.informaticalibera.cn1libs.wowza.HMAC_SHA256Impl").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException ex) {
+            System.out.println("HMAC_SHA256Impl is not in the classpath, it will be skipped");
+        }
+        WowzaHmacSha256 portable = new WowzaHmacSha256();
+
+        String expected = baseline(KEY, message(0));
+        check("WowzaHmacSha256", expected, portable.sign(KEY, message(0)));
+        if (javase != null) {
+            check("HMAC_SHA256Impl", expected, javase.HMAC_sha256(KEY, message(0)));
+        }
+
+        Sign baseline = WowzaSignerBenchmark::baseline;
+        run(baseline, WARM_UP);
+        long baselineTime = run(baseline, ITERATIONS);
+        System.out.println("Mac per call: " + baselineTime + " ns/signature");
+        if (javase != null) {
+            report("HMAC_SHA256Impl", javase::HMAC_sha256, baselineTime);
+        }
+        report("WowzaHmacSha256", portable::sign, baselineTime);
+    }
+
+    private static void report(String name, Sign sign, long baselineTime) {
+        run(sign, WARM_UP);
+        long time = run(sign, ITERATIONS);
+        System.out.println(name + ": " + time + " ns/signature, " + baselineTime * 100 / time + "% of the speed of the baseline");
+    }
+
+    private interface Sign {
+
+        String sign(String key, String message);
+    }
+
+    /**
+     * Average time (ns) of a signature.
+     */
+    private static long run(Sign sign, int iterations) {
+        int hash = 0;
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            hash += sign.sign(KEY, message(i)).hashCode();
+        }
+        time = System.nanoTime() - time;
+        if (hash == 42) {
+            // keeps the results alive
+            System.out.println();
+        }
+        return time / iterations;
+    }
+
+    /**
+     * The signed string of a request, as built by WowzaRequestSigner.
+     */
+    private static String message(int i) {
+        return (1570000000 + i) + ":/api/v1.3/live_streams/stream" + (i & 63) + "/state:" + KEY;
+    }
+
+    private static String baseline(String key, String message) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] digest = mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static void check(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(name + " returned " + actual + " instead of " + expected);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Wowza live events streaming CN1Lib
+ * Written in 2019 by Francesco Galgani, https://www.informatica-libera.net/
+ *
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along
+ * with this software. If not, see
+ * <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package net.informaticalibera.cn1libs.wowza;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Test of the end of the paging of WowzaStreamPager: with a server that
+ * honors the pagination, with a server that ignores the "page" parameter
+ * (and always returns the same full page, without total_records), and with
+ * the max number of pages.</p>
+ * <p>
+ * It's not part of the CN1Lib. Run it with CodenameOne.jar and the compiled
+ * CN1Lib in the classpath, it throws an AssertionError on failure:</p>
+ * <pre>
+ * java -cp lib/CodenameOne.jar:build/classes:build/test/classes net.informaticalibera.cn1libs.wowza.WowzaStreamPagerTest
+ * </pre>
+ *
+ * @author Francesco Galgani
+ */
+public class WowzaStreamPagerTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    public static void main(String[] args) {
+        paginatedServer();
+        serverIgnoringPage();
+        serverIgnoringPageWithTotal();
+        maxPages();
+        System.out.println("WowzaStreamPagerTest -> all the tests passed");
+    }
+
+    /**
+     * 250 streams, the last page is short.
+     */
+    private static void paginatedServer() {
+        WowzaStreamPager pager = new WowzaStreamPager(PAGE_SIZE);
+        int page = 1;
+        while (pager.hasNext()) {
+            int first = (page - 1) * PAGE_SIZE;
+            pager.accept(new WowzaStreamPager.Page(createStreams(first, Math.min(PAGE_SIZE, 250 - first)), -1), page);
+            page++;
+            check(page <= 4, "paginated server: too many pages");
+        }
+        check(page == 4, "paginated server: expected 3 pages, received " + (page - 1));
+        check(pager.getKnownTotalCount() == 250, "paginated server: expected 250 streams, known " + pager.getKnownTotalCount());
+    }
+
+    /**
+     * The server returns the first 100 streams (of more) for every page.
+     */
+    private static void serverIgnoringPage() {
+        WowzaStreamPager pager = new WowzaStreamPager(PAGE_SIZE);
+        List<WowzaStreamInfo> delivered = new ArrayList<>();
+        int page = 1;
+        while (pager.hasNext()) {
+            delivered.addAll(pager.accept(new WowzaStreamPager.Page(createStreams(0, PAGE_SIZE), -1), page));
+            page++;
+            check(page <= 3, "server ignoring page: the paging doesn't end");
+        }
+        check(delivered.size() == PAGE_SIZE, "server ignoring page: expected " + PAGE_SIZE + " delivered streams, got " + delivered.size());
+        check(pager.getKnownTotalCount() == PAGE_SIZE, "server ignoring page: expected " + PAGE_SIZE + " streams, known " + pager.getKnownTotalCount());
+    }
+
+    /**
+     * The server returns the first 100 streams for every page, with a total
+     * of 500 that is never reached.
+     */
+    private static void serverIgnoringPageWithTotal() {
+        WowzaStreamPager pager = new WowzaStreamPager(PAGE_SIZE);
+        int page = 1;
+        while (pager.hasNext()) {
+            pager.accept(new WowzaStreamPager.Page(createStreams(0, PAGE_SIZE), 500), page);
+            page++;
+            check(page <= 3, "server ignoring page with total: the paging doesn't end");
+        }
+        check(pager.getReceivedCount() == PAGE_SIZE, "server ignoring page with total: expected " + PAGE_SIZE + " received streams, got " + pager.getReceivedCount());
+    }
+
+    /**
+     * Full pages of new streams, without total_records.
+     */
+    private static void maxPages() {
+        WowzaStreamPager pager = new WowzaStreamPager(1);
+        int page = 1;
+        while (pager.hasNext()) {
+            pager.accept(new WowzaStreamPager.Page(createStreams(page, 1), -1), page);
+            page++;
+            check(page <= WowzaStreamPager.MAX_PAGES + 1, "max pages: the paging doesn't end");
+        }
+        check(page == WowzaStreamPager.MAX_PAGES + 1, "max pages: expected " + WowzaStreamPager.MAX_PAGES + " pages, received " + (page - 1));
+        check(pager.getKnownTotalCount() == -1, "max pages: the number of streams should be unknown");
+    }
+
+    private static List<WowzaStreamInfo> createStreams(int first, int count) {
+        List<WowzaStreamInfo> streams = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            streams.add(new WowzaStreamInfo("stream" + i, "Stream " + i, "stopped", Integer.toString(100000 + i), "eu_germany"));
+        }
+        return streams;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+}